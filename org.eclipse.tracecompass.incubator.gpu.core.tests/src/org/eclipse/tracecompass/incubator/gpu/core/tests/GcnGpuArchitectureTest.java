@@ -0,0 +1,83 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.eclipse.tracecompass.incubator.gpu.analysis.GcnGpuArchitecture;
+import org.eclipse.tracecompass.incubator.gpu.analysis.GcnGpuArchitectureFactory;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.GpuInfo;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class GcnGpuArchitectureTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private static long hardwareId(long se, long sh, long cu) {
+        return (se << 13) | (sh << 12) | (cu << 8);
+    }
+
+    @Test
+    public void knownDevices() {
+        GcnGpuArchitecture mi50 = GcnGpuArchitectureFactory.create("AMD Instinct MI50");
+        assertEquals("MI50 compute units", 60, mi50.numCU());
+        assertEquals("MI50 waves", 40, mi50.maxWavesPerCU());
+
+        GcnGpuArchitecture mi250x = GcnGpuArchitectureFactory.create("AMD Instinct MI250X");
+        assertEquals("MI250X compute units", 110, mi250x.numCU());
+        assertEquals("MI250X waves", 32, mi250x.maxWavesPerCU());
+
+        GcnGpuArchitecture unknown = GcnGpuArchitectureFactory.create("Unknown device");
+        assertEquals("Default compute units", 120, unknown.numCU());
+        assertEquals("Default waves", 40, unknown.maxWavesPerCU());
+    }
+
+    @Test
+    public void describedDevice() {
+        GpuInfo info = new GpuInfo();
+        info.name = "Custom";
+        info.architecture = new GpuInfo.Architecture();
+        info.architecture.num_cu = 8;
+        info.architecture.shader_engines = 2;
+        info.architecture.shader_arrays = 1;
+        info.architecture.simds_per_cu = 4;
+        info.architecture.waves_per_simd = 8;
+        info.architecture.lds_bytes_per_cu = 65536;
+        info.architecture.vgprs_per_simd = 512;
+        info.architecture.vgpr_granule = 8;
+
+        GcnGpuArchitecture gpu = GcnGpuArchitectureFactory.create(info);
+        assertEquals("Name", "Custom", gpu.name());
+        assertEquals("Compute units", 8, gpu.numCU());
+
+        // 100 registers are allocated as 104 : 4 waves in 512 registers
+        assertEquals("Waves limited by the registers", 4, gpu.maxWavesPerSimd(100));
+        assertEquals("Waves limited by the slots", 8, gpu.maxWavesPerSimd(32));
+        assertEquals("Workgroups limited by the LDS", 4, gpu.maxWorkgroupsPerCU(16384));
+    }
+
+    @Test
+    public void computeUnitIds() {
+        GcnGpuArchitecture gpu = GcnGpuArchitectureFactory.create(GcnGpuArchitectureFactory.MI100);
+
+        // Used to collide : cu + (sh << 3) + (se << 4)
+        assertNotEquals("Distinct shader arrays", gpu.computeUnitId(hardwareId(0, 0, 8)), gpu.computeUnitId(hardwareId(0, 1, 0)));
+        assertNotEquals("Distinct shader engines", gpu.computeUnitId(hardwareId(0, 1, 8)), gpu.computeUnitId(hardwareId(1, 0, 8)));
+
+        gpu.registerWave(hardwareId(0, 0, 8));
+        gpu.registerWave(hardwareId(0, 0, 8));
+        gpu.registerWave(hardwareId(0, 1, 0));
+        assertEquals("Active waves", 2, gpu.activeWavesInCU(gpu.computeUnitId(hardwareId(0, 0, 8))));
+        assertEquals("Active waves", 1, gpu.activeWavesInCU(gpu.computeUnitId(hardwareId(0, 1, 0))));
+        assertEquals("Total occupancy", 3. / 4800., gpu.totalOccupancy(), EPSILON);
+
+        gpu.unregisterWave(hardwareId(0, 0, 8));
+        assertEquals("Released wave", 1, gpu.activeWavesInCU(gpu.computeUnitId(hardwareId(0, 0, 8))));
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.incubator.gpu.analysis.GpuTimeSeriesPyramid;
+import org.eclipse.tracecompass.tmf.core.model.xy.IYModel;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class GpuTimeSeriesPyramidTest {
+
+    private static final double EPSILON = 1e-9;
+
+    private static final long START = 100L;
+    private static final long PERIOD = 10L;
+
+    @Test
+    public void downsampling() {
+        double[] samples = { 0., 1., 2., 3., 4., 5., 6., 7., 8., 9. };
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(START, PERIOD, samples);
+
+        long[] times = { 100L, 140L, 180L };
+        double[] min = new double[3];
+        double[] max = new double[3];
+        double[] avg = new double[3];
+        pyramid.query(times, min, max, avg);
+
+        assertEquals("First min", 0., min[0], EPSILON);
+        assertEquals("First max", 3., max[0], EPSILON);
+        assertEquals("First avg", 1.5, avg[0], EPSILON);
+        assertEquals("Second avg", 5.5, avg[1], EPSILON);
+        assertEquals("Last min", 8., min[2], EPSILON);
+        assertEquals("Last max", 9., max[2], EPSILON);
+    }
+
+    @Test
+    public void zoomedIn() {
+        double[] samples = { 0., 1., 2., 3. };
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(START, PERIOD, samples);
+
+        // Narrower than a sample : value holding at the time of the point
+        long[] times = { 125L, 126L };
+        double[] min = new double[2];
+        double[] max = new double[2];
+        double[] avg = new double[2];
+        pyramid.query(times, min, max, avg);
+        assertEquals("Within a sample", 2., avg[0], EPSILON);
+
+        long[] before = { 0L, 50L };
+        pyramid.query(before, min, max, avg);
+        assertEquals("Before the first sample", 0., avg[0], EPSILON);
+
+        long[] after = { 500L, 600L };
+        pyramid.query(after, min, max, avg);
+        assertEquals("After the last sample", 3., avg[1], EPSILON);
+    }
+
+    @Test
+    public void matchesScan() {
+        Random random = new Random(42);
+        double[] samples = new double[1000];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = random.nextInt(100);
+        }
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(START, PERIOD, samples);
+
+        for (int query = 0; query < 100; ++query) {
+            int first = random.nextInt(samples.length - 1);
+            int last = first + 1 + random.nextInt(samples.length - first - 1);
+
+            long[] times = { START + first * PERIOD, START + last * PERIOD };
+            double[] min = new double[2];
+            double[] max = new double[2];
+            double[] avg = new double[2];
+            pyramid.query(times, min, max, avg);
+
+            double expectedMin = Double.POSITIVE_INFINITY;
+            double expectedMax = Double.NEGATIVE_INFINITY;
+            double sum = 0.;
+            for (int i = first; i < last; ++i) {
+                expectedMin = Math.min(expectedMin, samples[i]);
+                expectedMax = Math.max(expectedMax, samples[i]);
+                sum += samples[i];
+            }
+
+            assertEquals("Min", expectedMin, min[0], EPSILON);
+            assertEquals("Max", expectedMax, max[0], EPSILON);
+            assertEquals("Avg", sum / (last - first), avg[0], EPSILON);
+        }
+    }
+
+    @Test
+    public void persistence() throws IOException {
+        Random random = new Random(7);
+        double[] samples = new double[300];
+        for (int i = 0; i < samples.length; ++i) {
+            samples[i] = random.nextDouble();
+        }
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(START, PERIOD, samples);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            pyramid.write(output);
+        }
+
+        GpuTimeSeriesPyramid read;
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = GpuTimeSeriesPyramid.read(input);
+        }
+
+        assertEquals("Start", START, read.getStart());
+        assertEquals("Period", PERIOD, read.getPeriod());
+        assertEquals("Size", samples.length, read.size());
+
+        long[] times = { START, START + 37 * PERIOD, START + 290 * PERIOD };
+        double[] min = new double[3];
+        double[] max = new double[3];
+        double[] avg = new double[3];
+        double[] readMin = new double[3];
+        double[] readMax = new double[3];
+        double[] readAvg = new double[3];
+        pyramid.query(times, min, max, avg);
+        read.query(times, readMin, readMax, readAvg);
+
+        for (int i = 0; i < times.length; ++i) {
+            assertEquals("Min", min[i], readMin[i], EPSILON);
+            assertEquals("Max", max[i], readMax[i], EPSILON);
+            assertEquals("Avg", avg[i], readAvg[i], EPSILON);
+        }
+    }
+
+    @Test
+    public void longSeriesPeriod() {
+        assertEquals("Short series", 2048L, GpuTimeSeriesPyramid.periodOf(1000000L, 2048L, 1L << 22));
+
+        // Five hours at 2048 ns would not fit in an int
+        long duration = 5L * 3600L * 1000000000L;
+        long period = GpuTimeSeriesPyramid.periodOf(duration, 2048L, 1L << 22);
+        assertEquals("Power of two", 0L, period & (period - 1));
+        assertTrue("Samples within the limit", duration / period <= 1L << 22);
+        assertTrue("Smallest such period", duration / (period / 2) > 1L << 22);
+    }
+
+    @Test
+    public void envelope() {
+        double[] samples = { 0., 1., 2., 3. };
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(START, PERIOD, samples);
+        long[] times = { 100L, 120L };
+
+        // Only the average series, whose id is a tree entry
+        List<@NonNull IYModel> models = new ArrayList<>();
+        pyramid.addModels(models, times, 3L, "Series", GpuTimeSeriesPyramid.envelopeRequested(new HashMap<>()));
+        assertEquals("Average only", 1, models.size());
+        assertEquals("Average id", 3L, models.get(0).getId());
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put(GpuTimeSeriesPyramid.ENVELOPE_KEY, Boolean.TRUE);
+        models.clear();
+        pyramid.addModels(models, times, 3L, "Series", GpuTimeSeriesPyramid.envelopeRequested(parameters));
+        assertEquals("Requested envelope", 3, models.size());
+        assertEquals("Min id", 3L | GpuTimeSeriesPyramid.MIN_SERIES, models.get(1).getId());
+        assertEquals("Max id", 3L | GpuTimeSeriesPyramid.MAX_SERIES, models.get(2).getId());
+    }
+}
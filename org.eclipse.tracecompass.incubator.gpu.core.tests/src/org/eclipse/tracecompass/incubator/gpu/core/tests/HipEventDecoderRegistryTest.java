@@ -0,0 +1,106 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipAnalyzerEvent;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipEventDecoderRegistry;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.IHipEventDecoder;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipEventDecoderRegistryTest {
+
+    private static final String LDS_EVENT = "test::LdsBankEvent";
+
+    private final LdsBankDecoder fDecoder = new LdsBankDecoder();
+
+    /**
+     * Custom event : bank (unsigned int), conflicts (unsigned int)
+     */
+    private static class LdsBankDecoder implements IHipEventDecoder {
+        @Override
+        public boolean accepts(HipTrace.EventsHeader header) {
+            return header.fields.size() == 2;
+        }
+
+        @Override
+        public ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            TmfEventField[] fields = {
+                    new TmfEventField("bank", header.readField(buffer, index, 0), null),
+                    new TmfEventField("conflicts", header.readField(buffer, index, 1), null)
+            };
+            TmfEventField root = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+            return new TmfEvent(trace, rank, TmfTimestamp.fromNanos(0L), new TmfEventType(LDS_EVENT, root), root);
+        }
+    }
+
+    private static HipTrace.EventsHeader createHeader(String eventName, String... types) {
+        List<HipTrace.EventsHeader.Field> fields = new ArrayList<>();
+        long eventSize = 0;
+        for (String type : types) {
+            long size = type.equals("m") ? 8L : 4L;
+            fields.add(new HipTrace.EventsHeader.Field(type, size));
+            eventSize += size;
+        }
+
+        return new HipTrace.EventsHeader(0L, eventSize, fields, 1L, eventName, "");
+    }
+
+    @After
+    public void unregisterDecoder() {
+        // The registry is global to the tests
+        HipEventDecoderRegistry.unregister(LDS_EVENT, fDecoder);
+    }
+
+    @Test
+    public void builtinDecoders() {
+        assertTrue("Wave state", createHeader("hip::WaveState", "m", "m", "j", "j").decoder instanceof HipAnalyzerEvent.HipWaveStateDecoder);
+        assertTrue("Tagged event", createHeader("hip::TaggedEvent", "j", "m").decoder instanceof HipAnalyzerEvent.HipTaggedEventDecoder);
+        assertTrue("Unexpected layout", createHeader("hip::WaveState", "m", "m", "j").decoder instanceof HipAnalyzerEvent.BaseEventDecoder);
+        assertTrue("Unknown event", createHeader("test::Unknown", "j").decoder instanceof HipAnalyzerEvent.BaseEventDecoder);
+    }
+
+    @Test
+    public void customDecoder() {
+        HipEventDecoderRegistry.register(LDS_EVENT, fDecoder);
+
+        HipTrace.EventsHeader header = createHeader(LDS_EVENT, "j", "j");
+        assertTrue("Custom decoder", header.decoder instanceof LdsBankDecoder);
+        assertTrue("Layout not accepted", createHeader(LDS_EVENT, "j").decoder instanceof HipAnalyzerEvent.BaseEventDecoder);
+
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(8, 5);
+        buffer.putInt(12, 3);
+
+        ITmfEvent event = HipAnalyzerEvent.parse(null, 0L, 0L, header, buffer, 8);
+        assertNotNull("Decoded event", event);
+        assertEquals("Type", LDS_EVENT, event.getType().getName());
+        assertEquals("Bank", Long.valueOf(5L), event.getContent().getField("bank").getValue());
+        assertEquals("Conflicts", Long.valueOf(3L), event.getContent().getField("conflicts").getValue());
+
+        assertTrue("Unregistered", HipEventDecoderRegistry.unregister(LDS_EVENT, fDecoder));
+        assertTrue("Generic decoder", createHeader(LDS_EVENT, "j", "j").decoder instanceof HipAnalyzerEvent.BaseEventDecoder);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTraceMapping;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceEventsHeaderTest {
+
+    private static final long EVENT_SIZE = 8L;
+
+    /**
+     * Producer 1 and 3 are empty, the other ones have 3, 2 and 4 events
+     */
+    private static final long[] OFFSETS = { 0L, 3L, 3L, 5L, 5L, 9L };
+
+    private static HipTrace.EventsHeader createHeader(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(OFFSETS.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (long offset : OFFSETS) {
+            buffer.putLong(offset);
+        }
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(buffer.array());
+        }
+
+        List<HipTrace.EventsHeader.Field> fields = new ArrayList<>();
+        fields.add(new HipTrace.EventsHeader.Field("m", EVENT_SIZE));
+
+        return new HipTrace.EventsHeader(0L, EVENT_SIZE, fields, OFFSETS.length - 1, "hip::Event", "");
+    }
+
+    @Test
+    public void producerLookup() throws IOException {
+        File file = File.createTempFile("hiptrace", ".bin");
+        file.deleteOnExit();
+
+        HipTrace.EventsHeader header = createHeader(file);
+        try (FileInputStream stream = new FileInputStream(file)) {
+            header.parseOffsets(new HipTraceMapping(stream.getChannel(), file.length()));
+        }
+
+        long[] expected = { 0L, 0L, 0L, 2L, 2L, 4L, 4L, 4L, 4L };
+
+        assertEquals("Producers", OFFSETS.length - 1, header.parallelism());
+        assertEquals("Events", 9L, header.numEvents());
+
+        // Sequential reads
+        for (int event = 0; event < expected.length; ++event) {
+            assertEquals("Sequential " + event, expected[event], header.idOf(event * EVENT_SIZE));
+        }
+
+        // Random reads
+        int[] order = { 8, 0, 4, 3, 7, 1, 5 };
+        for (int event : order) {
+            assertEquals("Random " + event, expected[event], header.idOf(event * EVENT_SIZE));
+        }
+
+        assertEquals("Out of bounds", -1L, header.idOf(9 * EVENT_SIZE));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @brief Writes synthetic hiptrace_managed files : for each kernel launch, a
+ *        counters dump followed by a hip::WaveState events block, each wave
+ *        ending with the bb = -1 event
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceGenerator {
+
+    /**
+     * @brief Number of counters of each dump
+     */
+    public static final int NUM_COUNTERS = 4;
+
+    /**
+     * @brief Threads per block, two waves
+     */
+    public static final int THREADS = 128;
+
+    /**
+     * @brief Size of a hip::WaveState event
+     */
+    public static final int EVENT_SIZE = 24;
+
+    /**
+     * @brief First s_memrealtime stamp of the trace
+     */
+    public static final long FIRST_STAMP = 1000000L;
+
+    /**
+     * @param launches
+     *            Number of kernel launches
+     * @param blocks
+     *            Number of blocks of each launch
+     * @param eventsPerWave
+     *            Number of events of each wave
+     * @return Number of events in the trace, counters dumps included
+     */
+    public static long numEvents(int launches, int blocks, int eventsPerWave) {
+        return launches * (1L + wavesOf(blocks) * (long) eventsPerWave);
+    }
+
+    private static int wavesOf(int blocks) {
+        return blocks * ((THREADS + 63) / 64);
+    }
+
+    /**
+     * @param launches
+     *            Number of kernel launches
+     * @param blocks
+     *            Number of blocks of each launch
+     * @param eventsPerWave
+     *            Number of events of each wave
+     * @return Temporary trace file, deleted on exit
+     * @throws IOException
+     *             If the trace could not be written
+     */
+    public static File generate(int launches, int blocks, int eventsPerWave) throws IOException {
+        return generate(launches, blocks, eventsPerWave, Long.BYTES);
+    }
+
+    /**
+     * @param launches
+     *            Number of kernel launches
+     * @param blocks
+     *            Number of blocks of each launch
+     * @param eventsPerWave
+     *            Number of events of each wave
+     * @param stampSize
+     *            Size of the stamp field, 8 or 4 bytes
+     * @return Temporary trace file, deleted on exit
+     * @throws IOException
+     *             If the trace could not be written
+     */
+    public static File generate(int launches, int blocks, int eventsPerWave, int stampSize) throws IOException {
+        int eventSize = EVENT_SIZE - Long.BYTES + stampSize;
+        String stampField = (stampSize == Long.BYTES) ? "m,8" : "j,4";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("hiptrace_managed\n".getBytes(StandardCharsets.US_ASCII));
+
+        int waves = wavesOf(blocks);
+
+        for (int launch = 0; launch < launches; ++launch) {
+            String counters = "hiptrace_counters,kern" + launch + "," + NUM_COUNTERS + ",0," + (1000L * launch) + "," + (1000L * launch + 500000L) + ",8,kernel_info,3," + blocks + ",1,1," + THREADS + ",1,1\n";
+            out.write(counters.getBytes(StandardCharsets.US_ASCII));
+
+            ByteBuffer countersData = ByteBuffer.allocate(NUM_COUNTERS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int c = 0; c < NUM_COUNTERS; ++c) {
+                countersData.putLong(c + 1L);
+            }
+            out.write(countersData.array());
+
+            String events = "hiptrace_events," + eventSize + "," + waves + ",hip::WaveState,begin_fields," + stampField + ",m,8,j,4,i,4\n";
+            out.write(events.getBytes(StandardCharsets.US_ASCII));
+
+            ByteBuffer data = ByteBuffer.allocate((waves + 1) * Long.BYTES + waves * eventsPerWave * eventSize).order(ByteOrder.LITTLE_ENDIAN);
+            for (int wave = 0; wave <= waves; ++wave) {
+                data.putLong((long) wave * eventsPerWave);
+            }
+
+            for (int wave = 0; wave < waves; ++wave) {
+                for (int event = 0; event < eventsPerWave; ++event) {
+                    // Waves are interleaved in time
+                    long stamp = FIRST_STAMP + 7000L * launch + 3L * wave + 10L * event;
+                    if (stampSize == Long.BYTES) {
+                        data.putLong(stamp);
+                    } else {
+                        data.putInt((int) stamp);
+                    }
+                    data.putLong((1L << ((wave + event + 1) % 64)) - 1);
+                    data.putInt(wave % 16);
+                    data.putInt(event < eventsPerWave - 1 ? event : -1);
+                }
+            }
+            out.write(data.array());
+        }
+
+        File file = File.createTempFile("hiptrace", ".hiptrace");
+        file.deleteOnExit();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            out.writeTo(stream);
+        }
+        return file;
+    }
+}
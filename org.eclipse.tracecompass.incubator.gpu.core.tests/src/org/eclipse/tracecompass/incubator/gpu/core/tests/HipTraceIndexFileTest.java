@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTraceIndexFile;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceIndexFileTest {
+
+    private static final String COUNTERS_HEADER = "hiptrace_counters,kernel,4,0,10,20,8,kernel_info,2,1,1,1,64,1,1";
+    private static final String EVENTS_HEADER = "hiptrace_events,24,1,hip::WaveState,begin_fields,m,8,m,8,j,4,j,4";
+
+    private static File createTrace(File dir, int size) throws IOException {
+        File trace = new File(dir, "trace.hiptrace");
+        try (FileOutputStream stream = new FileOutputStream(trace)) {
+            stream.write(new byte[size]);
+        }
+        return trace;
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        File dir = Files.createTempDirectory("hiptrace").toFile();
+        File trace = createTrace(dir, 256);
+        File index = new File(dir, HipTraceIndexFile.INDEX_FILE_NAME);
+
+        List<HipTraceIndexFile.Record> records = Arrays.asList(
+                new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_COUNTERS, 17L, COUNTERS_HEADER, 17L, 0L, 1L, -1L),
+                new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_EVENTS, 100L, EVENTS_HEADER, 180L, 24L, 3L, 123456789L));
+
+        assertTrue("Write index", HipTraceIndexFile.write(index, trace, records));
+
+        List<HipTraceIndexFile.Record> read = HipTraceIndexFile.read(index, trace);
+        assertNotNull("Read index", read);
+        assertEquals("Number of blocks", 2, read.size());
+
+        HipTraceIndexFile.Record events = read.get(1);
+        assertEquals("Kind", HipTraceIndexFile.KIND_EVENTS, events.kind);
+        assertEquals("Header", EVENTS_HEADER, events.header);
+        assertEquals("Header offset", 100L, events.headerOffset);
+        assertEquals("Base offset", 180L, events.baseOffset);
+        assertEquals("Event size", 24L, events.eventSize);
+        assertEquals("Events", 3L, events.numEvents);
+        assertEquals("First stamp", 123456789L, events.firstStamp);
+        assertEquals("Counters header", COUNTERS_HEADER, read.get(0).header);
+    }
+
+    @Test
+    public void outdatedIndex() throws IOException {
+        File dir = Files.createTempDirectory("hiptrace").toFile();
+        File trace = createTrace(dir, 256);
+        File index = new File(dir, HipTraceIndexFile.INDEX_FILE_NAME);
+
+        List<HipTraceIndexFile.Record> records = Arrays.asList(
+                new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_COUNTERS, 17L, COUNTERS_HEADER, 17L, 0L, 1L, -1L));
+
+        assertTrue("Write index", HipTraceIndexFile.write(index, trace, records));
+
+        // The trace grew, the index has to be rebuilt
+        createTrace(dir, 512);
+        assertNull("Outdated index", HipTraceIndexFile.read(index, trace));
+
+        assertNull("Missing index", HipTraceIndexFile.read(new File(dir, "missing.idx"), trace));
+    }
+
+    private static void writeBlockCount(File index, int numBlocks) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            // After the magic and the version, little-endian
+            file.seek(12);
+            file.writeInt(Integer.reverseBytes(numBlocks));
+        }
+    }
+
+    @Test
+    public void corruptedIndex() throws IOException {
+        File dir = Files.createTempDirectory("hiptrace").toFile();
+        File trace = createTrace(dir, 256);
+        File index = new File(dir, HipTraceIndexFile.INDEX_FILE_NAME);
+
+        List<HipTraceIndexFile.Record> records = Arrays.asList(
+                new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_COUNTERS, 17L, COUNTERS_HEADER, 17L, 0L, 1L, -1L));
+
+        assertTrue("Write index", HipTraceIndexFile.write(index, trace, records));
+
+        writeBlockCount(index, -1);
+        assertNull("Negative block count", HipTraceIndexFile.read(index, trace));
+
+        writeBlockCount(index, Integer.MAX_VALUE);
+        assertNull("Block count past the end", HipTraceIndexFile.read(index, trace));
+
+        // The damaged index can still be replaced
+        assertTrue("Rewrite index", HipTraceIndexFile.write(index, trace, records));
+        assertNotNull("Rewritten index", HipTraceIndexFile.read(index, trace));
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTraceIndex;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceIndexTest {
+
+    private static HipTraceIndex createIndex() {
+        HipTraceIndex index = new HipTraceIndex();
+
+        index.addBlock(100L, 0L, 1L, "counters"); // Counters dump
+        index.addBlock(200L, 24L, 10L, "events"); // 10 events
+        index.addBlock(1000L, 16L, 0L, "empty"); // Empty events block
+        index.addBlock(2000L, 8L, 5L, "last"); // 5 events
+
+        return index;
+    }
+
+    @Test
+    public void totalSize() {
+        HipTraceIndex index = createIndex();
+
+        assertEquals("Number of blocks", 4, index.numBlocks());
+        assertEquals("Number of events", 16L, index.size());
+    }
+
+    @Test
+    public void rankToBlock() {
+        HipTraceIndex index = createIndex();
+
+        assertEquals("Counters", 0, index.blockOf(0L));
+        assertEquals("First event", 1, index.blockOf(1L));
+        assertEquals("Last event of block", 1, index.blockOf(10L));
+        assertEquals("Skip empty block", 3, index.blockOf(11L));
+        assertEquals("Last event", 3, index.blockOf(15L));
+        assertEquals("Out of bounds", -1, index.blockOf(16L));
+        assertEquals("Negative rank", -1, index.blockOf(-1L));
+    }
+
+    @Test
+    public void rankToOffset() {
+        HipTraceIndex index = createIndex();
+
+        assertEquals("Counters", 100L, index.offsetOf(0L));
+        assertEquals("First event", 200L, index.offsetOf(1L));
+        assertEquals("Third event", 248L, index.offsetOf(3L));
+        assertEquals("Last block", 2000L, index.offsetOf(11L));
+        assertEquals("Last event", 2032L, index.offsetOf(15L));
+        assertEquals("Out of bounds", -1L, index.offsetOf(16L));
+    }
+
+    @Test
+    public void growIndex() {
+        HipTraceIndex index = new HipTraceIndex();
+
+        for (int i = 0; i < 1000; ++i) {
+            index.addBlock(i * 1000L, 10L, 3L, Integer.valueOf(i));
+        }
+
+        assertEquals("Number of events", 3000L, index.size());
+        assertEquals("Block", 500, index.blockOf(1501L));
+        assertEquals("Offset", 500_010L, index.offsetOf(1501L));
+        assertEquals("Header", Integer.valueOf(999), index.headerOf(index.blockOf(2999L)));
+    }
+
+    @Test
+    public void copyIndex() {
+        HipTraceIndex index = createIndex();
+        HipTraceIndex extended = index.copy();
+
+        extended.addBlock(3000L, 8L, 4L, "appended");
+
+        assertEquals("Original events", 16L, index.size());
+        assertEquals("Original blocks", 4, index.numBlocks());
+        assertEquals("Extended events", 20L, extended.size());
+        assertEquals("Appended block", 4, extended.blockOf(16L));
+        assertEquals("Appended offset", 3008L, extended.offsetOf(17L));
+        assertEquals("Shared block", 2032L, extended.offsetOf(15L));
+    }
+}
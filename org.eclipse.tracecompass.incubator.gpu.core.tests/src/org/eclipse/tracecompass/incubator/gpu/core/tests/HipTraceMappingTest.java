@@ -0,0 +1,144 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTraceMapping;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceMappingTest {
+
+    private static final int NUM_LONGS = 1000;
+
+    private static File createFile() throws IOException {
+        File file = File.createTempFile("hiptrace", ".bin");
+        file.deleteOnExit();
+
+        // One leading byte so that the longs are not aligned on the segments
+        ByteBuffer buffer = ByteBuffer.allocate(1 + NUM_LONGS * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 0x7f);
+        for (long i = 0; i < NUM_LONGS; ++i) {
+            buffer.putLong(i * 0x0101010101L - 1);
+        }
+
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(buffer.array());
+        }
+        return file;
+    }
+
+    @Test
+    public void segmentSize() throws IOException {
+        File file = createFile();
+        try (FileInputStream stream = new FileInputStream(file)) {
+            FileChannel channel = stream.getChannel();
+
+            assertEquals("Rounded up", 1024L, new HipTraceMapping(channel, file.length(), 1000L).segmentSize());
+            assertEquals("Clamped", 1L << 30, new HipTraceMapping(channel, file.length(), 1L << 40).segmentSize());
+        }
+    }
+
+    @Test
+    public void crossSegmentReads() throws IOException {
+        File file = createFile();
+        try (FileInputStream stream = new FileInputStream(file)) {
+            // Tiny segments, most longs straddle two of them
+            HipTraceMapping mapping = new HipTraceMapping(stream.getChannel(), file.length(), 64L);
+
+            assertEquals("Size", file.length(), mapping.size());
+            assertEquals("First byte", (byte) 0x7f, mapping.get(0L));
+
+            for (long i = 0; i < NUM_LONGS; ++i) {
+                long pos = 1 + i * Long.BYTES;
+                long expected = i * 0x0101010101L - 1;
+
+                assertEquals("Long " + i, expected, mapping.getLong(pos));
+                assertEquals("Int " + i, (int) expected, mapping.getInt(pos));
+                assertEquals("Short " + i, (short) expected, mapping.getShort(pos));
+            }
+        }
+    }
+
+    @Test
+    public void bulkReads() throws IOException {
+        File file = createFile();
+        try (FileInputStream stream = new FileInputStream(file)) {
+            HipTraceMapping mapping = new HipTraceMapping(stream.getChannel(), file.length(), 64L);
+
+            long[] longs = new long[NUM_LONGS];
+            mapping.getLongs(1L, longs, 0, NUM_LONGS);
+            for (int i = 0; i < NUM_LONGS; ++i) {
+                assertEquals("Long " + i, i * 0x0101010101L - 1, longs[i]);
+            }
+
+            // Low and high halves of the longs, read as unsigned ints
+            long[] ints = new long[2 * NUM_LONGS];
+            mapping.getUnsignedInts(1L, ints, 0, ints.length);
+            for (int i = 0; i < NUM_LONGS; ++i) {
+                long expected = i * 0x0101010101L - 1;
+                assertEquals("Low " + i, expected & 0xFFFFFFFFL, ints[2 * i]);
+                assertEquals("High " + i, expected >>> 32, ints[2 * i + 1]);
+            }
+        }
+    }
+
+    @Test
+    public void columnMinimum() throws IOException {
+        File file = createFile();
+        try (FileInputStream stream = new FileInputStream(file)) {
+            HipTraceMapping mapping = new HipTraceMapping(stream.getChannel(), file.length(), 64L);
+
+            // The first value is -1, the largest unsigned one
+            assertEquals("Whole column", 0x0101010100L, mapping.minUnsignedLong(1L, Long.BYTES, NUM_LONGS));
+            assertEquals("Every other value", 2 * 0x0101010101L - 1, mapping.minUnsignedLong(1L + 2 * Long.BYTES, 2 * Long.BYTES, NUM_LONGS / 2 - 1));
+            assertEquals("Largest value", -1L, mapping.minUnsignedLong(1L, Long.BYTES, 1L));
+            assertEquals("Empty column", -1L, mapping.minUnsignedLong(1L, Long.BYTES, 0L));
+        }
+    }
+
+    @Test
+    public void newlineScan() {
+        for (int position = 0; position < 24; ++position) {
+            ByteBuffer buffer = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < 24; ++i) {
+                // Bytes close to a newline, to catch false positives
+                buffer.put(i, (byte) (i == position ? '\n' : (i % 2 == 0 ? 0x0B : 0x8A)));
+            }
+
+            assertEquals("Newline at " + position, position, HipTraceMapping.indexOfNewline(buffer, 0, 24));
+            assertEquals("Out of range " + position, -1, HipTraceMapping.indexOfNewline(buffer, position + 1, 24));
+        }
+    }
+
+    @Test
+    public void lines() throws IOException {
+        File file = File.createTempFile("hiptrace", ".txt");
+        file.deleteOnExit();
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write("hiptrace_managed\nhiptrace_events,24,1\nno newline".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        try (FileInputStream stream = new FileInputStream(file)) {
+            HipTraceMapping mapping = new HipTraceMapping(stream.getChannel(), file.length(), 16L);
+
+            assertEquals("First line", "hiptrace_managed", mapping.getLine(0L));
+            assertEquals("Second line", "hiptrace_events,24,1", mapping.getLine(17L));
+            assertEquals("Unterminated line", null, mapping.getLine(38L));
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTraceMapping;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateCache;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateColumns;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceTest {
+
+    private static final int LAUNCHES = 3;
+    private static final int BLOCKS = 4;
+    private static final int EVENTS_PER_WAVE = 10;
+
+    private static final int READERS = 3;
+
+    private static HipTrace openTrace() throws Exception {
+        File file = HipTraceGenerator.generate(LAUNCHES, BLOCKS, EVENTS_PER_WAVE);
+
+        HipTrace trace = new HipTrace();
+        trace.initTrace(null, file.getPath(), TmfEvent.class);
+        return trace;
+    }
+
+    private static HipTrace openTrace(boolean timeOrdered) throws Exception {
+        System.setProperty(HipTrace.TIME_ORDERED_PROPERTY, Boolean.toString(timeOrdered));
+        try {
+            return openTrace();
+        } finally {
+            System.clearProperty(HipTrace.TIME_ORDERED_PROPERTY);
+        }
+    }
+
+    @Test
+    public void size() throws Exception {
+        HipTrace trace = openTrace();
+        try {
+            assertEquals("Number of events", HipTraceGenerator.numEvents(LAUNCHES, BLOCKS, EVENTS_PER_WAVE), trace.size());
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void seekRank() throws Exception {
+        HipTrace trace = openTrace();
+        try {
+            // Second launch : counters dump, then the events
+            long eventsPerLaunch = HipTraceGenerator.numEvents(1, BLOCKS, EVENTS_PER_WAVE);
+
+            ITmfContext context = trace.seekEvent(eventsPerLaunch);
+            ITmfEvent counters = trace.getNext(context);
+            assertNotNull("Counters", counters);
+            assertEquals("Counters rank", eventsPerLaunch, counters.getRank());
+            assertEquals("Counters type", HipTrace.HIPTRACE_COUNTERS_NAME, counters.getType().getName());
+
+            ITmfEvent event = trace.getNext(context);
+            assertNotNull("Event", event);
+            assertEquals("Event rank", eventsPerLaunch + 1, event.getRank());
+            assertEquals("Context rank", eventsPerLaunch + 2, context.getRank());
+            assertEquals("Context location", eventsPerLaunch + 2, ((Long) context.getLocation().getLocationInfo()).longValue());
+
+            assertNull("End of trace", trace.getNext(trace.seekEvent((long) trace.size())));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void seekRatio() throws Exception {
+        HipTrace trace = openTrace();
+        try {
+            ITmfContext context = trace.seekEvent(0.5);
+            assertEquals("Middle rank", trace.size() / 2, context.getRank());
+
+            ITmfEvent event = trace.getNext(context);
+            assertNotNull("Middle event", event);
+            assertEquals("Ratio", 0.5, trace.getLocationRatio(trace.seekEvent(event.getRank()).getLocation()), 1.0 / trace.size());
+
+            assertEquals("Start", 0L, trace.seekEvent(0.0).getRank());
+            assertEquals("End", trace.size(), trace.seekEvent(1.0).getRank());
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateEvent() throws Exception {
+        // File order, producer by producer
+        HipTrace trace = openTrace(false);
+        try {
+            assertFalse("File order", trace.isTimeOrdered());
+
+            // First event of the second wave, right after the counters dump
+            ITmfEvent event = trace.getNext(trace.seekEvent(1L + EVENTS_PER_WAVE));
+            assertTrue("Wave state event", event instanceof HipWaveStateEvent);
+
+            HipWaveStateEvent waveState = (HipWaveStateEvent) event;
+            assertEquals("Basic block", 0L, waveState.getBasicBlock());
+            assertEquals("Stamp", HipTraceGenerator.FIRST_STAMP + 3L, waveState.getStamp());
+            assertEquals("Exec", 3L, waveState.getExec());
+            assertEquals("Hardware id", 1L, waveState.getHwId());
+            assertEquals("Producer", 1L, waveState.getProducerId());
+
+            // The generic content is built on demand, from the same values
+            assertEquals("Content bb", Long.valueOf(0L), waveState.getContent().getField("bb").getValue());
+            assertEquals("Content stamp", Long.valueOf(HipTraceGenerator.FIRST_STAMP + 3L), waveState.getContent().getField("stamp").getValue());
+            assertEquals("Wave", Long.valueOf(1L), waveState.getContent().getField("producer_id").getField("wave").getValue());
+
+            // Read after the second wave, the first event of the block still
+            // gets the earliest stamp of the block. One tick lasts 40 ns
+            ITmfEvent first = trace.getNext(trace.seekEvent(1L));
+            assertNotNull("First event", first);
+            assertEquals("Tick duration", 3L * 40L, event.getTimestamp().getValue() - first.getTimestamp().getValue());
+            assertEquals("Same timestamp", event.getTimestamp().getValue(), trace.getNext(trace.seekEvent(1L + EVENTS_PER_WAVE)).getTimestamp().getValue());
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateEventEquality() throws Exception {
+        HipTrace trace = openTrace();
+        try {
+            HipTrace.EventsHeader header = trace.getWaveStateHeaders().get(0);
+            ITmfTimestamp timestamp = TmfTimestamp.fromNanos(1000L);
+
+            HipWaveStateEvent event = new HipWaveStateEvent(trace, 1L, timestamp, header, 0L, 10L, 1L, 2L, 3L);
+            HipWaveStateEvent same = new HipWaveStateEvent(trace, 1L, timestamp, header, 0L, 10L, 1L, 2L, 3L);
+            assertTrue("Same record", event.equals(same));
+            assertEquals("Same hash", event.hashCode(), same.hashCode());
+
+            // Same rank and timestamp, the content is not built
+            assertFalse("Other basic block", event.equals(new HipWaveStateEvent(trace, 1L, timestamp, header, 0L, 10L, 1L, 2L, 4L)));
+            assertFalse("Other exec", event.equals(new HipWaveStateEvent(trace, 1L, timestamp, header, 0L, 10L, 5L, 2L, 3L)));
+            assertFalse("Other hw_id", event.equals(new HipWaveStateEvent(trace, 1L, timestamp, header, 0L, 10L, 1L, 6L, 3L)));
+            assertFalse("Other producer", event.equals(new HipWaveStateEvent(trace, 1L, timestamp, header, 24L, 10L, 1L, 2L, 3L)));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void timeOrdered() throws Exception {
+        HipTrace trace = openTrace(true);
+        try {
+            long eventsPerLaunch = HipTraceGenerator.numEvents(1, BLOCKS, EVENTS_PER_WAVE);
+            ITmfContext context = trace.seekEvent(0L);
+
+            long previous = Long.MIN_VALUE;
+            for (long rank = 0; rank < trace.size(); ++rank) {
+                ITmfEvent event = trace.getNext(context);
+                assertNotNull("Event", event);
+
+                if (rank % eventsPerLaunch == 0) {
+                    // The counters dump still opens each launch
+                    assertEquals("Counters", HipTrace.HIPTRACE_COUNTERS_NAME, event.getType().getName());
+                    previous = Long.MIN_VALUE;
+                } else {
+                    long stamp = ((HipWaveStateEvent) event).getStamp();
+                    assertTrue("Time order", stamp >= previous);
+                    previous = stamp;
+                }
+            }
+
+            // The waves are interleaved : second event, from the second wave
+            HipWaveStateEvent second = (HipWaveStateEvent) trace.getNext(trace.seekEvent(2L));
+            assertEquals("Second stamp", HipTraceGenerator.FIRST_STAMP + 3L, second.getStamp());
+            assertEquals("Second producer", 1L, second.getProducerId());
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    /**
+     * @brief Reads the whole trace from the given context
+     *
+     * @return Sum of the ranks and timestamps of the events, to compare
+     *         readers
+     */
+    private static long readAll(HipTrace trace, ITmfContext context) {
+        long checksum = 0L;
+        long expectedRank = context.getRank();
+
+        ITmfEvent event = trace.getNext(context);
+        while (event != null) {
+            assertEquals("Event rank", expectedRank++, event.getRank());
+            checksum += event.getRank() * 31 + event.getTimestamp().getValue();
+            event = trace.getNext(context);
+        }
+
+        assertEquals("Events read", trace.size(), expectedRank);
+        return checksum;
+    }
+
+    @Test
+    public void concurrentContexts() throws Exception {
+        HipTrace trace = openTrace();
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            long expected = readAll(trace, trace.seekEvent(0L));
+
+            // Several threads reading the whole trace at the same time, each
+            // from its own context, see the same events as a single reader
+            List<Callable<Long>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; ++i) {
+                readers.add(() -> Long.valueOf(readAll(trace, trace.seekEvent(0L))));
+            }
+
+            List<Future<Long>> results = executor.invokeAll(readers);
+            for (Future<Long> result : results) {
+                assertEquals("Concurrent reader", expected, result.get().longValue());
+            }
+        } finally {
+            executor.shutdown();
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateColumns() throws Exception {
+        HipTrace trace = openTrace();
+        try {
+            List<HipTrace.EventsHeader> headers = trace.getWaveStateHeaders();
+            assertEquals("Launches", LAUNCHES, headers.size());
+
+            HipWaveStateColumns columns = trace.getWaveStateColumns(headers.get(1));
+            assertNotNull("Columns", columns);
+            assertEquals("Records", headers.get(1).numEvents(), columns.size());
+            assertTrue("Cached", columns == trace.getWaveStateColumns(headers.get(1)));
+
+            // Records are in time order, the waves interleaved
+            for (int i = 1; i < columns.size(); ++i) {
+                assertTrue("Time order", columns.time(i) >= columns.time(i - 1));
+            }
+            assertEquals("Second stamp", HipTraceGenerator.FIRST_STAMP + 7003L, columns.stamp(1));
+            assertEquals("Second producer", 1L, columns.producer(1));
+            assertEquals("Second basic block", 0L, columns.basicBlock(1));
+            assertEquals("Second hw_id", 1L, columns.hwId(1));
+            assertEquals("Second exec", 3L, columns.exec(1));
+            assertEquals("Last basic block", -1L, columns.basicBlock(columns.size() - 1));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateColumnsNotMerged() throws Exception {
+        // 4 bytes stamps are not merged when indexing
+        File file = HipTraceGenerator.generate(LAUNCHES, BLOCKS, EVENTS_PER_WAVE, Integer.BYTES);
+        HipTrace trace = new HipTrace();
+        trace.initTrace(null, file.getPath(), TmfEvent.class);
+
+        try {
+            HipTrace.EventsHeader header = trace.getWaveStateHeaders().get(1);
+            assertNull("Not merged", header.getTimeOrder());
+
+            HipWaveStateColumns columns = trace.getWaveStateColumns(header);
+            assertNotNull("Columns", columns);
+            for (int i = 1; i < columns.size(); ++i) {
+                assertTrue("Stamp order", columns.stamp(i) >= columns.stamp(i - 1));
+            }
+            assertEquals("Second stamp", HipTraceGenerator.FIRST_STAMP + 7003L, columns.stamp(1));
+            assertEquals("Second producer", 1L, columns.producer(1));
+            assertEquals("Second hw_id", 1L, columns.hwId(1));
+            assertEquals("Last basic block", -1L, columns.basicBlock(columns.size() - 1));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateCacheBudget() throws Exception {
+        File file = HipTraceGenerator.generate(LAUNCHES, BLOCKS, EVENTS_PER_WAVE);
+        HipTrace trace = new HipTrace();
+        trace.initTrace(null, file.getPath(), TmfEvent.class);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            HipTraceMapping mapping = new HipTraceMapping(channel, channel.size());
+            List<HipTrace.EventsHeader> headers = trace.getWaveStateHeaders();
+
+            HipWaveStateColumns first = HipWaveStateColumns.build(headers.get(0), mapping);
+            assertNotNull("Columns", first);
+            long launchSize = first.memorySize();
+
+            // Room for two launches : the least recently used one is evicted
+            HipWaveStateCache cache = new HipWaveStateCache(2 * launchSize);
+            HipWaveStateColumns cached = cache.get(headers.get(0), mapping);
+            cache.get(headers.get(1), mapping);
+            assertTrue("Hit", cached == cache.get(headers.get(0), mapping));
+            cache.get(headers.get(2), mapping);
+            assertEquals("Used memory", 2 * launchSize, cache.usedMemory());
+            assertTrue("Kept", cached == cache.get(headers.get(0), mapping));
+
+            // Larger than the budget : built, not kept
+            HipWaveStateCache small = new HipWaveStateCache(launchSize - 1);
+            assertNotNull("Uncached columns", small.get(headers.get(0), mapping));
+            assertEquals("Nothing cached", 0L, small.usedMemory());
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void waveStateCacheConcurrentBuilds() throws Exception {
+        File file = HipTraceGenerator.generate(LAUNCHES, BLOCKS, EVENTS_PER_WAVE);
+        HipTrace trace = new HipTrace();
+        trace.initTrace(null, file.getPath(), TmfEvent.class);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            HipTraceMapping mapping = new HipTraceMapping(channel, channel.size());
+            List<HipTrace.EventsHeader> headers = trace.getWaveStateHeaders();
+            HipWaveStateCache cache = new HipWaveStateCache();
+
+            // Readers of the same launch share a single build, other launches
+            // are built at the same time
+            List<Callable<HipWaveStateColumns>> readers = new ArrayList<>();
+            for (int i = 0; i < 2 * READERS; ++i) {
+                HipTrace.EventsHeader header = headers.get(i % 2);
+                readers.add(() -> cache.get(header, mapping));
+            }
+
+            List<Future<HipWaveStateColumns>> results = executor.invokeAll(readers);
+            for (int i = 0; i < results.size(); ++i) {
+                HipWaveStateColumns columns = results.get(i).get();
+                assertNotNull("Columns", columns);
+                assertTrue("Shared build", columns == cache.get(headers.get(i % 2), mapping));
+            }
+            assertEquals("Used memory", results.get(0).get().memorySize() + results.get(1).get().memorySize(), cache.usedMemory());
+        } finally {
+            executor.shutdown();
+            trace.dispose();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package org.eclipse.tracecompass.incubator.gpu.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.ItaniumABIParser;
+import org.junit.Test;
+
+/**
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class ItaniumABIParserTest {
+
+    private static ByteBuffer allOnes() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(0, 0L);
+        buffer.putLong(8, -1L);
+        return buffer;
+    }
+
+    @Test
+    public void signedValues() {
+        ByteBuffer buffer = allOnes();
+
+        assertEquals("int", -1L, ItaniumABIParser.readValue("i", 4, buffer, 8));
+        assertEquals("short", -1L, ItaniumABIParser.readValue("s", 2, buffer, 8));
+        assertEquals("signed char", -1L, ItaniumABIParser.readValue("a", 1, buffer, 8));
+        assertEquals("long", -1L, ItaniumABIParser.readValue("l", 8, buffer, 8));
+        assertEquals("3 bytes", -1L, ItaniumABIParser.readValue(true, 3, buffer, 8));
+    }
+
+    @Test
+    public void unsignedValues() {
+        ByteBuffer buffer = allOnes();
+
+        assertEquals("unsigned int", 0xFFFFFFFFL, ItaniumABIParser.readValue("j", 4, buffer, 8));
+        assertEquals("unsigned short", 0xFFFFL, ItaniumABIParser.readValue("t", 2, buffer, 8));
+        assertEquals("unsigned char", 0xFFL, ItaniumABIParser.readValue("h", 1, buffer, 8));
+        assertEquals("3 bytes", 0xFFFFFFL, ItaniumABIParser.readValue(false, 3, buffer, 8));
+
+        // Straddling the zeroed and the set bytes
+        assertEquals("Little endian", 0xFFFF0000L, ItaniumABIParser.readValue("j", 4, buffer, 6));
+    }
+
+    @Test
+    public void deserialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putFloat(0, 1.5f);
+        buffer.putDouble(8, -2.25);
+
+        assertEquals("float", 1.5f, ItaniumABIParser.deserializeVariable("f", 4, buffer, 0));
+        assertEquals("double", -2.25, ItaniumABIParser.deserializeVariable("d", 8, buffer, 8));
+        assertEquals("double primitive", -2.25, ItaniumABIParser.readDouble(8, buffer, 8), 0.0);
+        assertEquals("bool", false, ItaniumABIParser.deserializeVariable("b", 1, buffer, 0));
+
+        Object unknown = ItaniumABIParser.deserializeVariable("7MyClass", 3, buffer, 0);
+        assertEquals("Unknown type", 3, ((List<?>) unknown).size());
+    }
+
+    @Test
+    public void kinds() {
+        assertEquals("int", ItaniumABIParser.Kind.SIGNED, ItaniumABIParser.kindOf("i", 4));
+        assertEquals("unsigned long", ItaniumABIParser.Kind.UNSIGNED, ItaniumABIParser.kindOf("m", 8));
+        assertEquals("Wide integer", ItaniumABIParser.Kind.OTHER, ItaniumABIParser.kindOf("y", 16));
+        assertEquals("double", ItaniumABIParser.Kind.FLOATING, ItaniumABIParser.kindOf("d", 8));
+        assertEquals("Unsupported floating size", ItaniumABIParser.Kind.OTHER, ItaniumABIParser.kindOf("d", 16));
+        assertEquals("void", ItaniumABIParser.Kind.OTHER, ItaniumABIParser.kindOf("v", 0));
+    }
+}
@@ -0,0 +1,170 @@
+package org.eclipse.tracecompass.incubator.gpu.analysis;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.GcnAsmParser;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.GpuInfo;
+
+/**
+ * @brief GCN Architecture implementation built from a device description.
+ *        The active waves are counted in an array indexed by compute unit :
+ *        registering a wave is constant time and does not allocate.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class GcnGpu implements GcnGpuArchitecture {
+
+    /**
+     * @brief Compute unit ids of a shader array, as encoded in the 4 bits of
+     *        the HW_ID register. Harvested compute units leave holes in the
+     *        ids, the slots are then larger than the compute units count
+     */
+    private static final int CU_SLOTS = 16;
+
+    private final String fName;
+    private final int fNumCU;
+    private final int fShaderEngines;
+    private final int fShaderArrays;
+    private final int fSimdsPerCU;
+    private final int fWavesPerSimd;
+    private final int fLdsBytesPerCU;
+    private final int fVgprsPerSimd;
+    private final int fVgprGranule;
+
+    // Active waves, by computeUnitId()
+    private final int[] fActiveWaves;
+    private long fTotalWaves = 0L;
+
+    /**
+     * @param name
+     *            Name of the device
+     * @param architecture
+     *            Description of the device, see GpuInfo.Architecture.isValid()
+     */
+    public GcnGpu(String name, GpuInfo.Architecture architecture) {
+        fName = name;
+        fNumCU = architecture.num_cu;
+        fShaderEngines = architecture.shader_engines;
+        fShaderArrays = architecture.shader_arrays;
+        fSimdsPerCU = architecture.simds_per_cu;
+        fWavesPerSimd = architecture.waves_per_simd;
+        fLdsBytesPerCU = architecture.lds_bytes_per_cu;
+        fVgprsPerSimd = architecture.vgprs_per_simd;
+        fVgprGranule = architecture.vgpr_granule;
+
+        fActiveWaves = new int[fShaderEngines * fShaderArrays * CU_SLOTS];
+    }
+
+    @Override
+    public String name() {
+        return fName;
+    }
+
+    @Override
+    public int numCU() {
+        return fNumCU;
+    }
+
+    @Override
+    public int numShaderEngines() {
+        return fShaderEngines;
+    }
+
+    @Override
+    public int numShaderArrays() {
+        return fShaderArrays;
+    }
+
+    @Override
+    public int numSimdPerCU() {
+        return fSimdsPerCU;
+    }
+
+    @Override
+    public int wavesPerSimd() {
+        return fWavesPerSimd;
+    }
+
+    @Override
+    public int ldsBytesPerCU() {
+        return fLdsBytesPerCU;
+    }
+
+    @Override
+    public int vgprsPerSimd() {
+        return fVgprsPerSimd;
+    }
+
+    @Override
+    public int vgprGranule() {
+        return fVgprGranule;
+    }
+
+    /**
+     * @return Number of compute unit ids, see computeUnitId()
+     */
+    public int numComputeUnitIds() {
+        return fActiveWaves.length;
+    }
+
+    @Override
+    public int computeUnitId(long hardwareIdRegister) {
+        // Same fields as GcnAsmParser.HardwareIdRegister, without allocating
+        int cu = (int) GcnAsmParser.extractBits(hardwareIdRegister, 8, 11);
+        int sh = (int) GcnAsmParser.extractBits(hardwareIdRegister, 12, 12);
+        int se = (int) GcnAsmParser.extractBits(hardwareIdRegister, 13, 14);
+        if (se >= fShaderEngines || sh >= fShaderArrays) {
+            return -1;
+        }
+
+        return (se * fShaderArrays + sh) * CU_SLOTS + cu;
+    }
+
+    @Override
+    public void registerWave(long hardwareIdRegister) {
+        int cu = computeUnitId(hardwareIdRegister);
+        if (cu < 0) {
+            return;
+        }
+
+        ++fActiveWaves[cu];
+        ++fTotalWaves;
+    }
+
+    @Override
+    public void unregisterWave(long hardwareIdRegister) {
+        int cu = computeUnitId(hardwareIdRegister);
+        if (cu < 0 || fActiveWaves[cu] == 0) {
+            return;
+        }
+
+        --fActiveWaves[cu];
+        --fTotalWaves;
+    }
+
+    @Override
+    public int activeWavesInCU(int computeUnit) {
+        if (computeUnit < 0 || computeUnit >= fActiveWaves.length) {
+            return 0;
+        }
+        return fActiveWaves[computeUnit];
+    }
+
+    @Override
+    public double totalOccupancy() {
+        return fTotalWaves / ((double) numCU() * maxWavesPerCU());
+    }
+
+    /**
+     * @brief Dump content to stdout
+     */
+    public void dump() {
+        for (int i = 0; i < fActiveWaves.length; ++i) {
+            if (fActiveWaves[i] != 0) {
+                System.out.format("%d : %d\n", i, fActiveWaves[i]); //$NON-NLS-1$
+            }
+        }
+
+        System.out.format("Total : %d\n", fTotalWaves); //$NON-NLS-1$
+    }
+
+}
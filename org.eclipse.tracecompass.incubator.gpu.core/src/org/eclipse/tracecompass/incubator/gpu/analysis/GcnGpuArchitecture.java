@@ -8,6 +8,11 @@ public interface GcnGpuArchitecture {
 
     // ----- Hardware information ----- //
 
+    /**
+     * @return Name of the device
+     */
+    String name();
+
     /**
      * @return Number of Compute units in the GPU
      */
@@ -16,7 +21,73 @@ public interface GcnGpuArchitecture {
     /**
      * @return Maximum number of concurrently executing waves per compute unit
      */
-    int maxWavesPerCU();
+    default int maxWavesPerCU() {
+        return numSimdPerCU() * wavesPerSimd();
+    }
+
+    /**
+     * @return Number of shader engines in the GPU
+     */
+    int numShaderEngines();
+
+    /**
+     * @return Number of shader arrays per shader engine
+     */
+    int numShaderArrays();
+
+    /**
+     * @return Number of SIMD units per compute unit
+     */
+    int numSimdPerCU();
+
+    /**
+     * @return Wave slots per SIMD
+     */
+    int wavesPerSimd();
+
+    /**
+     * @return Local data share per compute unit, in bytes
+     */
+    int ldsBytesPerCU();
+
+    /**
+     * @return Vector registers (per lane) of a SIMD, shared by its waves
+     */
+    int vgprsPerSimd();
+
+    /**
+     * @return Allocation granularity of the vector registers of a wave
+     */
+    int vgprGranule();
+
+    // ----- Resource limits ----- //
+
+    /**
+     * @param vgprsPerWave
+     *            Vector registers used by the kernel
+     * @return Waves of the kernel that fit in a SIMD
+     */
+    default int maxWavesPerSimd(int vgprsPerWave) {
+        if (vgprsPerWave <= 0) {
+            return wavesPerSimd();
+        }
+
+        int allocated = (vgprsPerWave + vgprGranule() - 1) / vgprGranule() * vgprGranule();
+        return Math.min(wavesPerSimd(), vgprsPerSimd() / allocated);
+    }
+
+    /**
+     * @param ldsBytesPerWorkgroup
+     *            Local data share used by a workgroup of the kernel
+     * @return Workgroups of the kernel that fit in a compute unit, as far as
+     *         the local data share is concerned
+     */
+    default int maxWorkgroupsPerCU(int ldsBytesPerWorkgroup) {
+        if (ldsBytesPerWorkgroup <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        return ldsBytesPerCU() / ldsBytesPerWorkgroup;
+    }
 
     // ----- State altering ------ //
 
@@ -26,29 +97,40 @@ public interface GcnGpuArchitecture {
      */
     void registerWave(long hardwareIdRegister);
 
+    /**
+     * @param hardwareIdRegister
+     *            Value of the HW_ID register of a wave previously registered
+     */
+    void unregisterWave(long hardwareIdRegister);
+
     // ------ Data retrieval & analysis ----- //
+
+    /**
+     * @param hardwareIdRegister
+     *            Value of the HW_ID register
+     * @return Id of the compute unit of the wave, unique in the GPU, or -1 if
+     *         the register is out of the topology
+     */
+    int computeUnitId(long hardwareIdRegister);
+
     /**
      * @param computeUnit
-     *            Id of the compute unit
+     *            Id of the compute unit, see computeUnitId()
      * @return Number of active waves in the compute unit
      */
     int activeWavesInCU(int computeUnit);
 
     /**
      * @param computeUnit
-     *            Id of the compute unit
+     *            Id of the compute unit, see computeUnitId()
      * @return Occupancy of the compute unit
      */
     default double occupancy(int computeUnit) {
         return ((double) activeWavesInCU(computeUnit)) / ((double) maxWavesPerCU());
     }
 
-    default double totalOccupancy() {
-        double sum = 0.;
-        for (int i = 0; i < numCU(); ++i) {
-            sum += occupancy(i);
-        }
-
-        return sum / numCU();
-    }
+    /**
+     * @return Occupancy of the whole GPU
+     */
+    double totalOccupancy();
 }
@@ -0,0 +1,155 @@
+package org.eclipse.tracecompass.incubator.gpu.analysis;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.GpuInfo;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * @brief Creates the GcnGpuArchitecture of a device, from its description in
+ *        the GpuInfo file of the trace or from the known devices. The device
+ *        is looked up, in order :
+ *        <ul>
+ *        <li>the architecture block of the GpuInfo file</li>
+ *        <li>the ARCHITECTURE_PROPERTY system property</li>
+ *        <li>the name of the GpuInfo file</li>
+ *        <li>DEFAULT_ARCHITECTURE</li>
+ *        </ul>
+ *        The known devices are described per die, as seen by the runtime (an
+ *        MI250X shows as two devices).
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public final class GcnGpuArchitectureFactory {
+
+    /**
+     * @brief System property to select a known device, e.g. MI210
+     */
+    public static final String ARCHITECTURE_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.architecture"; //$NON-NLS-1$
+
+    /**
+     * @brief Vega 20 (gfx906)
+     */
+    public static final String MI50 = "MI50"; //$NON-NLS-1$
+
+    /**
+     * @brief CDNA 1 (gfx908)
+     */
+    public static final String MI100 = "MI100"; //$NON-NLS-1$
+
+    /**
+     * @brief CDNA 2 (gfx90a)
+     */
+    public static final String MI210 = "MI210"; //$NON-NLS-1$
+
+    /**
+     * @brief CDNA 2 (gfx90a), one of the two dies
+     */
+    public static final String MI250X = "MI250X"; //$NON-NLS-1$
+
+    /**
+     * @brief Device used when none is described
+     */
+    public static final String DEFAULT_ARCHITECTURE = MI100;
+
+    private static final Map<String, GpuInfo.Architecture> KNOWN = new LinkedHashMap<>();
+
+    static {
+        KNOWN.put(MI50, architecture(60, 4, 1, 4, 10, 65536, 256, 4));
+        KNOWN.put(MI100, architecture(120, 4, 2, 4, 10, 65536, 256, 4));
+        KNOWN.put(MI210, architecture(104, 4, 2, 4, 8, 65536, 512, 8));
+        KNOWN.put(MI250X, architecture(110, 4, 2, 4, 8, 65536, 512, 8));
+    }
+
+    private GcnGpuArchitectureFactory() {
+        // Static factory
+    }
+
+    private static GpuInfo.Architecture architecture(int numCU, int shaderEngines, int shaderArrays, int simdsPerCU, int wavesPerSimd, int ldsBytesPerCU, int vgprsPerSimd, int vgprGranule) {
+        GpuInfo.Architecture architecture = new GpuInfo.Architecture();
+        architecture.num_cu = numCU;
+        architecture.shader_engines = shaderEngines;
+        architecture.shader_arrays = shaderArrays;
+        architecture.simds_per_cu = simdsPerCU;
+        architecture.waves_per_simd = wavesPerSimd;
+        architecture.lds_bytes_per_cu = ldsBytesPerCU;
+        architecture.vgprs_per_simd = vgprsPerSimd;
+        architecture.vgpr_granule = vgprGranule;
+        return architecture;
+    }
+
+    /**
+     * @param name
+     *            Device name, e.g. "AMD Instinct MI210"
+     * @return Description of the known device the name refers to, or null
+     */
+    public static GpuInfo.@Nullable Architecture describe(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+
+        // Longest match, "MI250X" rather than "MI250"
+        String upperName = name.toUpperCase(Locale.ROOT);
+        String known = null;
+        for (String candidate : KNOWN.keySet()) {
+            if (upperName.contains(candidate) && (known == null || candidate.length() > known.length())) {
+                known = candidate;
+            }
+        }
+
+        return known != null ? KNOWN.get(known) : null;
+    }
+
+    /**
+     * @param name
+     *            Device name
+     * @return Architecture of the known device, the default one if it is not
+     *         known
+     */
+    public static GcnGpuArchitecture create(@Nullable String name) {
+        GpuInfo.Architecture architecture = describe(name);
+        if (name == null || architecture == null) {
+            return new MI100Gpu();
+        }
+        return new GcnGpu(name, architecture);
+    }
+
+    /**
+     * @param info
+     *            Device information, if any
+     * @return Architecture of the device
+     */
+    public static GcnGpuArchitecture create(@Nullable GpuInfo info) {
+        if (info != null) {
+            GpuInfo.Architecture architecture = info.architecture;
+            if (architecture != null && architecture.isValid()) {
+                return new GcnGpu(info.name != null ? info.name : "", architecture); //$NON-NLS-1$
+            }
+        }
+
+        String property = System.getProperty(ARCHITECTURE_PROPERTY);
+        if (describe(property) != null) {
+            return create(property);
+        }
+
+        return create(info != null ? info.name : null);
+    }
+
+    /**
+     * @param trace
+     *            Trace, whose supplementary files may hold a GpuInfo file
+     * @return Architecture of the device of the trace
+     */
+    public static GcnGpuArchitecture create(ITmfTrace trace) {
+        File file = new File(TmfTraceManager.getSupplementaryFileDir(trace) + GpuRooflineAnalysis.GPU_INFO_SUPPLEMENTARY_FILE);
+        GpuInfo info = file.exists() ? GpuInfo.deserialize(Path.of(file.getAbsolutePath())) : null;
+        return create(info);
+    }
+}
@@ -10,13 +10,11 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.incubator.gpu.core.trace.GcnAsmParser;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateColumns;
 import org.eclipse.tracecompass.internal.tmf.core.model.tree.AbstractTreeDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
-import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
-import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
 import org.eclipse.tracecompass.tmf.core.model.TmfCommonXAxisModel;
 import org.eclipse.tracecompass.tmf.core.model.YModel;
@@ -69,59 +67,59 @@ public class GpuBasicBlocksReportDataProvider extends AbstractTreeDataProvider<@
     public @NonNull TmfModelResponse<@NonNull ITmfXyModel> fetchXY(@NonNull Map<@NonNull String, @NonNull Object> fetchParameters, @Nullable IProgressMonitor monitor) {
         IProgressMonitor mon = monitor != null ? monitor : new NullProgressMonitor();
 
-        GpuWaveStateAnalysis module = getAnalysisModule();
+        ITmfTrace trace = getTrace();
 
-        ITmfStateSystem ss = module.getStateSystem();
-
-        if (ss == null) {
+        if (!(trace instanceof HipTrace)) {
             return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, CommonStatusMessage.ANALYSIS_INITIALIZATION_FAILED);
         }
 
-        @SuppressWarnings("nls")
-        List<@NonNull Integer> eventsQuarks = ss.getQuarks("waves", "*", "content");
+        HipTrace hipTrace = (HipTrace) trace;
 
         long[] xAxis = new long[65]; // 0 to 64 active waves
         for (int i = 0; i < xAxis.length; ++i) {
             xAxis[i] = i;
         }
 
+        // Only the records in the requested time range, if any
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        long[] requested = GpuTimeSeriesPyramid.requestedTimes(fetchParameters);
+        if (requested != null) {
+            start = requested[0];
+            end = requested[requested.length - 1];
+        }
+
         TreeMap<Long, double[]> histograms = new TreeMap<>();
 
-        try {
-            Iterable<@NonNull ITmfStateInterval> intervals = ss.query2D(eventsQuarks, ss.getStartTime(), ss.getCurrentEndTime());
+        List<HipTrace.EventsHeader> launches = hipTrace.getWaveStateHeaders();
+        mon.beginTask("Process launches..", launches.size()); //$NON-NLS-1$
 
-            for (ITmfStateInterval interval : intervals) {
-                ITmfEventField event = (ITmfEventField) interval.getValue();
+        for (HipTrace.EventsHeader launch : launches) {
+            HipWaveStateColumns columns = hipTrace.getWaveStateColumns(launch);
+            if (columns == null) {
+                return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, CommonStatusMessage.STATE_SYSTEM_FAILED);
+            }
 
-                if (event == null) {
-                    continue;
-                }
+            // The histogram of the previous record is reused as long as the
+            // basic block does not change
+            long lastBb = -1;
+            double[] histogram = null;
 
-                Long bb = (Long) event.getField("bb").getValue(); //$NON-NLS-1$
+            for (int i = columns.firstAtOrAfter(start); i < columns.size() && columns.time(i) <= end; ++i) {
+                long bb = columns.basicBlock(i);
                 if (bb == -1) {
                     continue;
                 }
 
-                GcnAsmParser.ExecRegister exec = (GcnAsmParser.ExecRegister) event.getField("exec").getValue(); //$NON-NLS-1$
-                Integer active = exec.activeThreads();
-
-                double[] histogram = histograms.get(bb);
-                if (histogram == null) {
-                    histogram = new double[65];
-                    histogram[active] = 1.;
-                    histograms.put(bb, histogram);
-                } else {
-                    histograms.compute(bb, (key, value) -> {
-                        value[active] += 1.;
-                        return value;
-                    });
+                if (histogram == null || bb != lastBb) {
+                    histogram = histograms.computeIfAbsent(bb, key -> new double[65]);
+                    lastBb = bb;
                 }
+
+                histogram[Long.bitCount(columns.exec(i))] += 1.;
             }
 
-        } catch (IndexOutOfBoundsException | TimeRangeException | StateSystemDisposedException e) {
-            return new TmfModelResponse<>(null,
-                    ITmfResponse.Status.FAILED,
-                    CommonStatusMessage.STATE_SYSTEM_FAILED);
+            mon.worked(1);
         }
 
         // BBlocks are ordered
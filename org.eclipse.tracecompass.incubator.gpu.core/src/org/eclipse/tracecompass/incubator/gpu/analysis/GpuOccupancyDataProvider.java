@@ -3,25 +3,32 @@
  */
 package org.eclipse.tracecompass.incubator.gpu.analysis;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.incubator.gpu.core.trace.GcnAsmParser;
 import org.eclipse.tracecompass.internal.tmf.core.model.tree.AbstractTreeDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
-import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
 import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
 import org.eclipse.tracecompass.tmf.core.model.TmfCommonXAxisModel;
-import org.eclipse.tracecompass.tmf.core.model.YModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataProvider;
 import org.eclipse.tracecompass.tmf.core.model.tree.TmfTreeDataModel;
@@ -47,9 +54,137 @@ public class GpuOccupancyDataProvider extends AbstractTreeDataProvider<@NonNull
     public static final String ID = "org.eclipse.tracecompass.incubator.gpu.analysis.GpuOccupancyDataProvider"; //$NON-NLS-1$
 
     /**
-     * @brief Sampling period to avoid computing each interval
+     * @brief Sampling period to avoid computing each interval (~2 us, a power
+     *        of two so that the summary levels are 2^k ns wide)
      */
-    private static final long SAMPLING_NS = 2_500L;
+    private static final long SAMPLING_NS = 1L << 11;
+
+    /**
+     * @brief Maximum number of samples of the average occupancy, its period
+     *        is increased (by powers of two) on long traces
+     */
+    private static final long MAX_SAMPLES = 1L << 22;
+
+    /**
+     * @brief Maximum number of samples of the whole occupancy tree, the
+     *        period of its series is increased (by powers of two) on long
+     *        traces
+     */
+    private static final int MAX_TREE_SAMPLES = 1 << 22;
+
+    /**
+     * @brief Summaries saved in the supplementary files
+     */
+    private static final String SERIES_FILE = "gpu_occupancy.series"; //$NON-NLS-1$
+    private static final int SERIES_VERSION = 2;
+
+    private static final String AVERAGE = "average"; //$NON-NLS-1$
+    private static final String AVERAGE_NAME = "Average occupancy"; //$NON-NLS-1$
+
+    /**
+     * @brief Levels of the occupancy tree, under the GPU
+     */
+    @SuppressWarnings("nls")
+    private static final String[] LEVELS = { "SE", "SH", "CU", "SIMD" };
+
+    /**
+     * @brief Average occupancy of the GPU, and occupancy of each shader
+     *        engine, shader array, compute unit and SIMD keyed by its path in
+     *        the tree ("se", "se/sh", "se/sh/cu", "se/sh/cu/simd")
+     */
+    private static final class OccupancySeries {
+        private final GpuTimeSeriesPyramid average;
+        private final SortedMap<String, GpuTimeSeriesPyramid> nodes;
+
+        // Tree of the series, and series by entry id
+        private final List<@NonNull TmfTreeDataModel> entries = new ArrayList<>();
+        private final Map<Long, GpuTimeSeriesPyramid> seriesById = new HashMap<>();
+        private final Map<Long, String> namesById = new HashMap<>();
+        private long gpuId = -1L;
+
+        /**
+         * @brief Builds the tree of the series. The entry ids are those of the
+         *        attributes of the nodes (see entryId()), which do not change
+         *        as the state system grows
+         */
+        private void addEntries(ToLongFunction<String> entryIds) {
+            gpuId = entryIds.applyAsLong(""); //$NON-NLS-1$
+            if (gpuId == -1L) {
+                return;
+            }
+
+            entries.add(new TmfTreeDataModel(gpuId, -1L, "GPU")); //$NON-NLS-1$
+            seriesById.put(gpuId, average);
+            namesById.put(gpuId, AVERAGE_NAME);
+
+            // Sorted keys : a parent is always listed before its children
+            Map<String, Long> ids = new HashMap<>();
+            for (Map.Entry<String, GpuTimeSeriesPyramid> node : nodes.entrySet()) {
+                String key = node.getKey();
+                int separator = key.lastIndexOf('/');
+                Long parentId = (separator < 0) ? Long.valueOf(gpuId) : ids.get(key.substring(0, separator));
+                long id = entryIds.applyAsLong(key);
+                if (parentId == null || id == -1L) {
+                    continue;
+                }
+
+                String[] path = key.split("/"); //$NON-NLS-1$
+                StringBuilder name = new StringBuilder();
+                for (int depth = 0; depth < path.length; ++depth) {
+                    name.append(depth > 0 ? " " : "").append(LEVELS[depth]).append(' ').append(path[depth]); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+
+                ids.put(key, id);
+                entries.add(new TmfTreeDataModel(id, parentId, LEVELS[path.length - 1] + ' ' + path[path.length - 1]));
+                seriesById.put(id, node.getValue());
+                namesById.put(id, name.toString());
+            }
+        }
+
+        private OccupancySeries(GpuTimeSeriesPyramid average, SortedMap<String, GpuTimeSeriesPyramid> nodes) {
+            this.average = average;
+            this.nodes = nodes;
+        }
+
+        private static @Nullable OccupancySeries fromMap(Map<String, GpuTimeSeriesPyramid> series) {
+            GpuTimeSeriesPyramid average = series.get(AVERAGE);
+            if (average == null) {
+                return null;
+            }
+
+            SortedMap<String, GpuTimeSeriesPyramid> nodes = new TreeMap<>(OccupancySeries::compareKeys);
+            for (Map.Entry<String, GpuTimeSeriesPyramid> entry : series.entrySet()) {
+                if (!entry.getKey().equals(AVERAGE)) {
+                    nodes.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return new OccupancySeries(average, nodes);
+        }
+
+        private Map<String, GpuTimeSeriesPyramid> toMap() {
+            Map<String, GpuTimeSeriesPyramid> series = new LinkedHashMap<>();
+            series.put(AVERAGE, average);
+            series.putAll(nodes);
+            return series;
+        }
+
+        /**
+         * @brief Orders the keys by their ids, parents first
+         */
+        private static int compareKeys(String first, String second) {
+            String[] firstPath = first.split("/"); //$NON-NLS-1$
+            String[] secondPath = second.split("/"); //$NON-NLS-1$
+            for (int depth = 0; depth < Math.min(firstPath.length, secondPath.length); ++depth) {
+                int order = Integer.compare(Integer.parseInt(firstPath[depth]), Integer.parseInt(secondPath[depth]));
+                if (order != 0) {
+                    return order;
+                }
+            }
+            return Integer.compare(firstPath.length, secondPath.length);
+        }
+    }
+
+    private @Nullable OccupancySeries fOccupancy = null;
 
     /**
      * @param trace
@@ -90,79 +225,232 @@ public class GpuOccupancyDataProvider extends AbstractTreeDataProvider<@NonNull
             return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, CommonStatusMessage.ANALYSIS_INITIALIZATION_FAILED);
         }
 
-        int wavesQuark;
+        OccupancySeries occupancy;
         try {
-            wavesQuark = ss.getQuarkAbsolute("waves"); //$NON-NLS-1$
-        } catch (AttributeNotFoundException e1) {
-            return new TmfModelResponse<>(null, Status.FAILED, CommonStatusMessage.STATE_SYSTEM_FAILED);
+            occupancy = getOccupancy(ss, mon);
+        } catch (IndexOutOfBoundsException | TimeRangeException | StateSystemDisposedException e) {
+            return new TmfModelResponse<>(null,
+                    ITmfResponse.Status.FAILED,
+                    CommonStatusMessage.STATE_SYSTEM_FAILED);
         }
 
-        List<@NonNull Integer> waves = ss.getSubAttributes(wavesQuark, false);
+        // Requested points, the whole trace at the sampling period otherwise
+        long[] times = GpuTimeSeriesPyramid.requestedTimes(fetchParameters);
+        if (times == null) {
+            times = occupancy.average.sampleTimes();
+        }
 
-        // ----- Sampling time ----- //
+        // Series selected in the tree, the average occupancy otherwise
+        Collection<Long> selected = DataProviderParameterUtils.extractSelectedItems(fetchParameters);
+        boolean envelope = GpuTimeSeriesPyramid.envelopeRequested(fetchParameters);
+        List<@NonNull IYModel> models = new ArrayList<>();
+        if (selected == null || selected.isEmpty()) {
+            selected = Collections.emptyList();
+            occupancy.average.addModels(models, times, occupancy.gpuId, AVERAGE_NAME, envelope);
+        }
 
-        long begin = ss.getStartTime();
-        long end = ss.getCurrentEndTime();
+        for (Long id : selected) {
+            GpuTimeSeriesPyramid series = occupancy.seriesById.get(id);
+            String name = occupancy.namesById.get(id);
+            if (series != null && name != null) {
+                series.addModels(models, times, id, name, envelope);
+            }
+        }
 
-        int size = (int) ((end - begin) / SAMPLING_NS);
-        long[] times = new long[size];
+        mon.done();
+        return new TmfModelResponse<>(new TmfCommonXAxisModel("GPU Wave Lifetime Analysis", times, models), Status.COMPLETED, CommonStatusMessage.COMPLETED); //$NON-NLS-1$
+    }
 
-        long t = begin;
-        for (int i = 0; i < size; ++i) {
-            times[i] = t;
-            t += SAMPLING_NS;
+    /**
+     * @brief The occupancy is sampled once the state system is built and saved
+     *        with the trace, later requests (e.g. zooming) only query its
+     *        summaries
+     */
+    private synchronized OccupancySeries getOccupancy(ITmfStateSystem ss, IProgressMonitor monitor) throws StateSystemDisposedException {
+        OccupancySeries occupancy = fOccupancy;
+        if (occupancy != null) {
+            return occupancy;
         }
 
-        // ----- Create models ----- //
+        GcnGpuArchitecture gpu = GcnGpuArchitectureFactory.create(getTrace());
 
-        mon.beginTask("Process states..", size); //$NON-NLS-1$
+        // A partial state system would give a partial summary
+        if (!ss.waitUntilBuilt(0)) {
+            occupancy = computeOccupancy(ss, gpu, monitor);
+            occupancy.addEntries(key -> entryId(ss, key));
+            return occupancy;
+        }
 
-        // Cumulative waves
+        // The series are normalized by the wave slots of the device
+        int version = Objects.hash(SERIES_VERSION, gpu.numCU(), gpu.maxWavesPerCU(), gpu.numShaderEngines(), gpu.numShaderArrays(), gpu.numSimdPerCU());
+        GpuTimeSeriesFile file = new GpuTimeSeriesFile(getTrace(), SERIES_FILE, version);
+        Map<String, GpuTimeSeriesPyramid> saved = file.read();
+        if (saved != null) {
+            occupancy = OccupancySeries.fromMap(saved);
+        }
 
-        double[] averageOccupancy = new double[size];
+        if (occupancy == null) {
+            occupancy = computeOccupancy(ss, gpu, monitor);
+            file.write(occupancy.toMap());
+        }
 
-        try {
-            int i = 0;
-            for (long time : times) {
-                List<@NonNull ITmfStateInterval> values = ss.queryFullState(time);
+        occupancy.addEntries(key -> entryId(ss, key));
+        fOccupancy = occupancy;
+        return occupancy;
+    }
+
+    /**
+     * @param key
+     *            Path of a node in the tree, "" for the whole GPU
+     * @return Entry id of the node, from the quark of its occupancy attribute,
+     *         -1 if it has none
+     */
+    private long entryId(ITmfStateSystem ss, String key) {
+        String[] path = key.isEmpty() ? new String[0] : key.split("/"); //$NON-NLS-1$
+        String[] attribute = new String[path.length + 1];
+        attribute[0] = GpuWaveStateProvider.OCCUPANCY_ATTRIBUTE;
+        System.arraycopy(path, 0, attribute, 1, path.length);
+
+        int quark = ss.optQuarkAbsolute(attribute);
+        return (quark == ITmfStateSystem.INVALID_ATTRIBUTE) ? -1L : getId(quark);
+    }
+
+    private static OccupancySeries computeOccupancy(ITmfStateSystem ss, GcnGpuArchitecture gpu, IProgressMonitor monitor) throws StateSystemDisposedException {
+        @SuppressWarnings("nls")
+        List<@NonNull Integer> simds = ss.getQuarks(GpuWaveStateProvider.OCCUPANCY_ATTRIBUTE, "*", "*", "*", "*");
+
+        // Every node of the tree, sums of the SIMDs under them
+        Map<Integer, String> simdKeys = new LinkedHashMap<>();
+        Set<String> nodeKeys = new HashSet<>();
+        for (Integer quark : simds) {
+            String key = keyOf(ss, quark);
+            simdKeys.put(quark, key);
+            nodeKeys.addAll(pathOf(key));
+        }
 
-                MI100Gpu gpuState = new MI100Gpu();
+        // ----- Sampling time ----- //
 
-                for (int wave : waves) {
-                    ITmfStateInterval interval = values.get(wave);
-                    Long bb = (Long) interval.getValue();
+        long begin = ss.getStartTime();
+        long end = ss.getCurrentEndTime();
 
-                    ITmfStateInterval content = values.get(ss.getSubAttributes(wave, false).get(0));
+        long period = GpuTimeSeriesPyramid.periodOf(end - begin, SAMPLING_NS, MAX_SAMPLES);
+        int size = (int) ((end - begin) / period);
 
-                    if (bb != null && bb != -1) {
-                        ITmfEventField event = (ITmfEventField) content.getValue();
+        long treePeriod = GpuTimeSeriesPyramid.periodOf(end - begin, SAMPLING_NS, MAX_TREE_SAMPLES / Math.max(1, nodeKeys.size()));
+        int treeSize = (int) ((end - begin) / treePeriod);
 
-                        if (event != null) {
-                            gpuState.registerWave(GcnAsmParser.HardwareIdRegister.fromEventFields(event.getField("hw_id"))); //$NON-NLS-1$
-                        }
+        // ----- Create models ----- //
 
-                    }
-                }
+        monitor.beginTask("Process states..", size); //$NON-NLS-1$
 
-                // gpuState.dump();
+        // Each counter interval adds its active waves to the samples it
+        // covers, through a difference array (one for the whole GPU, one per
+        // SIMD)
 
-                averageOccupancy[i] = gpuState.totalOccupancy();
+        double[] delta = new double[size + 1];
+        Map<Integer, double[]> simdDelta = new LinkedHashMap<>();
+        for (Integer quark : simds) {
+            simdDelta.put(quark, new double[treeSize + 1]);
+        }
 
-                mon.worked(1);
-                ++i;
+        for (ITmfStateInterval interval : ss.query2D(simds, begin, end)) {
+            Object value = interval.getValue();
+            if (!(value instanceof Integer)) {
+                continue;
+            }
+            int waves = (Integer) value;
+
+            addInterval(delta, begin, period, interval, waves);
+
+            double[] simd = simdDelta.get(interval.getAttribute());
+            if (simd != null) {
+                addInterval(simd, begin, treePeriod, interval, waves);
             }
-        } catch (IndexOutOfBoundsException | TimeRangeException | StateSystemDisposedException e) {
-            return new TmfModelResponse<>(null,
-                    ITmfResponse.Status.FAILED,
-                    CommonStatusMessage.STATE_SYSTEM_FAILED);
         }
 
-        YModel occupancyAverage = new YModel(2, "Average occupancy", averageOccupancy); //$NON-NLS-1$
+        // The SIMDs are added up to the root of the tree
+        Map<String, double[]> activeWaves = new HashMap<>();
+        for (Map.Entry<Integer, double[]> entry : simdDelta.entrySet()) {
+            double[] simd = prefixSum(entry.getValue(), treeSize);
+            for (String node : pathOf(simdKeys.getOrDefault(entry.getKey(), ""))) { //$NON-NLS-1$
+                double[] waves = activeWaves.computeIfAbsent(node, k -> new double[treeSize]);
+                for (int i = 0; i < treeSize; ++i) {
+                    waves[i] += simd[i];
+                }
+            }
+        }
 
-        List<@NonNull IYModel> models = List.of(occupancyAverage);
+        double capacity = (double) gpu.numCU() * gpu.maxWavesPerCU();
+
+        // Wave slots of a node, by depth in the tree
+        double[] nodeCapacity = {
+                capacity / gpu.numShaderEngines(),
+                capacity / (gpu.numShaderEngines() * gpu.numShaderArrays()),
+                gpu.maxWavesPerCU(),
+                (double) gpu.maxWavesPerCU() / gpu.numSimdPerCU()
+        };
+
+        SortedMap<String, GpuTimeSeriesPyramid> nodes = new TreeMap<>(OccupancySeries::compareKeys);
+        for (Map.Entry<String, double[]> entry : activeWaves.entrySet()) {
+            double[] waves = entry.getValue();
+            double slots = nodeCapacity[entry.getKey().split("/").length - 1]; //$NON-NLS-1$
+            for (int i = 0; i < treeSize; ++i) {
+                waves[i] /= slots;
+            }
+            nodes.put(entry.getKey(), new GpuTimeSeriesPyramid(begin, treePeriod, waves));
+        }
 
-        mon.done();
-        return new TmfModelResponse<>(new TmfCommonXAxisModel("GPU Wave Lifetime Analysis", times, models), Status.COMPLETED, CommonStatusMessage.COMPLETED); //$NON-NLS-1$
+        double[] averageOccupancy = prefixSum(delta, size);
+        for (int i = 0; i < size; ++i) {
+            averageOccupancy[i] /= capacity;
+        }
+        monitor.worked(size);
+
+        return new OccupancySeries(new GpuTimeSeriesPyramid(begin, period, averageOccupancy), nodes);
+    }
+
+    /**
+     * @return Path of a SIMD counter in the tree, "se/sh/cu/simd"
+     */
+    private static String keyOf(ITmfStateSystem ss, int simdQuark) {
+        String key = ss.getAttributeName(simdQuark);
+        int quark = ss.getParentAttributeQuark(simdQuark);
+        for (int depth = 1; depth < LEVELS.length; ++depth) {
+            key = ss.getAttributeName(quark) + '/' + key;
+            quark = ss.getParentAttributeQuark(quark);
+        }
+        return key;
+    }
+
+    /**
+     * @return Keys of a node and of its parents, e.g. "0/1/3", "0/1" and "0"
+     */
+    private static List<String> pathOf(String key) {
+        List<String> path = new ArrayList<>();
+        for (int separator = key.length(); separator > 0; separator = key.lastIndexOf('/', separator - 1)) {
+            path.add(key.substring(0, separator));
+        }
+        return path;
+    }
+
+    private static void addInterval(double[] delta, long begin, long period, ITmfStateInterval interval, int activeWaves) {
+        int size = delta.length - 1;
+        long first = Math.max(0L, (interval.getStartTime() - begin + period - 1) / period);
+        long last = Math.min(size - 1L, (interval.getEndTime() - begin) / period);
+        if (first <= last) {
+            delta[(int) first] += activeWaves;
+            delta[(int) last + 1] -= activeWaves;
+        }
+    }
+
+    private static double[] prefixSum(double[] delta, int size) {
+        double[] values = new double[size];
+        double value = 0.;
+        for (int i = 0; i < size; ++i) {
+            value += delta[i];
+            values[i] = value;
+        }
+        return values;
     }
 
     @Override
@@ -172,7 +460,8 @@ public class GpuOccupancyDataProvider extends AbstractTreeDataProvider<@NonNull
 
     @Override
     protected @NonNull TmfTreeModel<@NonNull TmfTreeDataModel> getTree(@NonNull ITmfStateSystem ss, @NonNull Map<@NonNull String, @NonNull Object> fetchParameters, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
-        return new TmfTreeModel<>(Collections.emptyList(), Collections.emptyList());
+        IProgressMonitor mon = monitor != null ? monitor : new NullProgressMonitor();
+        return new TmfTreeModel<>(Collections.emptyList(), getOccupancy(ss, mon).entries);
     }
 
 }
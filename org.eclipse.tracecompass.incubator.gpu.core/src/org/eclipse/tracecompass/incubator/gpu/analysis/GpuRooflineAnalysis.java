@@ -15,7 +15,6 @@ import org.eclipse.tracecompass.incubator.gpu.core.trace.GpuInfo;
 import org.eclipse.tracecompass.incubator.gpu.core.trace.HipAnalyzerReport;
 import org.eclipse.tracecompass.tmf.core.analysis.requirements.*;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
-import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
@@ -24,7 +23,7 @@ import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
  * @author Sébastien Darche <sebastien.darche@polymtl.ca>
  *
  */
-public class GpuRooflineAnalysis extends TmfStateSystemAnalysisModule {
+public class GpuRooflineAnalysis extends GpuStateSystemAnalysis {
 
     public static final String ID = "org.eclipse.tracecompass.incubator.gpu.core.GpuRooflineAnalysis"; //$NON-NLS-1$
     public static final String ROOFLINE_VIEW_ID = "org.eclipse.tracecompass.incubator.gpu.ui.roofline"; //$NON-NLS-1$
@@ -127,10 +126,4 @@ public class GpuRooflineAnalysis extends TmfStateSystemAnalysisModule {
         return new GpuRooflineStateProvider(Objects.requireNonNull(getTrace()), getId(), null, report, gpuInfo);
     }
 
-    @Override
-    protected StateSystemBackendType getBackendType() {
-        // Using the in-memory state system to ensure no caching (for dev.)
-        return StateSystemBackendType.INMEM;
-    }
-
 }
@@ -3,7 +3,6 @@
  */
 package org.eclipse.tracecompass.incubator.gpu.analysis;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -168,8 +167,7 @@ public class GpuRooflineStateProvider extends AbstractTmfStateProvider {
     protected void handleHipTraceEvent(@NonNull ITmfEvent event) {
         long ts = lastKernelCall.getTimestamp().getValue();
 
-        @SuppressWarnings("unchecked")
-        List<Long> counters = (ArrayList<Long>) event.getContent().getField("counters").getValue(); //$NON-NLS-1$
+        HipTrace.Counters counters = (HipTrace.Counters) event.getContent().getField("counters").getValue(); //$NON-NLS-1$
         KernelConfiguration configuration = (KernelConfiguration) event.getContent().getField("configuration").getValue(); //$NON-NLS-1$
 
         if(counters == null || configuration == null) {
@@ -195,7 +193,8 @@ public class GpuRooflineStateProvider extends AbstractTmfStateProvider {
             }
         }
 */
-        for(long counter : counters) {
+        for(int i = 0; i < counters.size(); ++i) {
+            long counter = counters.get(i);
             int bblock = (int) (counter % configuration.bblocks);
             HipAnalyzerReport.BasicBlock bblock_info = blocks.get((bblock));
 
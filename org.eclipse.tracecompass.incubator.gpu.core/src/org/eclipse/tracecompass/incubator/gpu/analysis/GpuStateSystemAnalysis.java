@@ -0,0 +1,74 @@
+package org.eclipse.tracecompass.incubator.gpu.analysis;
+
+import java.util.Locale;
+
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * @brief Base class of the GPU state system analyses. The history is kept in
+ *        a history tree file in the supplementary files of the trace, which
+ *        is reused as long as the state provider version does not change. The
+ *        backend can be overridden with a system property, e.g. the partial
+ *        history for very large traces.
+ *
+ *        The history trees expect the intervals in time order : the HipTraces
+ *        are then read in time order (see HipTrace.TIME_ORDERED_PROPERTY),
+ *        and the in-memory backend is used for those read in file order.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public abstract class GpuStateSystemAnalysis extends TmfStateSystemAnalysisModule {
+
+    /**
+     * @brief System property to select the state system backend : full
+     *        (default), partial or inmem
+     */
+    public static final String BACKEND_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.backend"; //$NON-NLS-1$
+
+    private static StateSystemBackendType selectedBackend() {
+        String backend = System.getProperty(BACKEND_PROPERTY);
+        if (backend == null) {
+            return StateSystemBackendType.FULL;
+        }
+
+        try {
+            return StateSystemBackendType.valueOf(backend.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return StateSystemBackendType.FULL;
+        }
+    }
+
+    /**
+     * @return True if the selected backend keeps the history on disk, which
+     *         requires the events in time order
+     */
+    public static boolean isHistoryOnDisk() {
+        StateSystemBackendType backend = selectedBackend();
+        return backend == StateSystemBackendType.FULL || backend == StateSystemBackendType.PARTIAL;
+    }
+
+    @Override
+    protected StateSystemBackendType getBackendType() {
+        StateSystemBackendType backend = selectedBackend();
+        if (backend != StateSystemBackendType.FULL && backend != StateSystemBackendType.PARTIAL) {
+            return backend;
+        }
+
+        // Intervals out of time order would degrade the history tree
+        ITmfTrace trace = getTrace();
+        if (trace != null) {
+            for (ITmfTrace member : TmfTraceManager.getTraceSet(trace)) {
+                if (member instanceof HipTrace && !((HipTrace) member).isTimeOrdered()) {
+                    return StateSystemBackendType.INMEM;
+                }
+            }
+        }
+
+        return backend;
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.eclipse.tracecompass.incubator.gpu.analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+
+/**
+ * @brief Named time series summaries of a trace, saved in its supplementary
+ *        files so that they are not recomputed when the trace is opened
+ *        again. A file is only reused for the same series version, and as
+ *        long as the size and the modification time of the trace do not
+ *        change.
+ *
+ *        The file is big-endian and laid out as follows :
+ *
+ *        <pre>
+ *        magic (8) | format (4) | version (4) | traceSize (8) | traceModified (8)
+ *        | numSeries (4) then, for each series :
+ *        name (UTF) | GpuTimeSeriesPyramid.write()
+ *        </pre>
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class GpuTimeSeriesFile {
+
+    private static final long MAGIC = 0x4750555059524D44L; // "GPUPYRMD"
+    private static final int FORMAT_VERSION = 1;
+
+    private final File fFile;
+    private final int fVersion;
+    private final long fTraceSize;
+    private final long fTraceModified;
+
+    /**
+     * @param trace
+     *            Trace the series were computed from
+     * @param name
+     *            Name of the file, in the supplementary files of the trace
+     * @param version
+     *            Version of the series, to be increased when they change
+     */
+    public GpuTimeSeriesFile(ITmfTrace trace, String name, int version) {
+        fFile = new File(TmfTraceManager.getSupplementaryFileDir(trace) + name);
+        fVersion = version;
+        File traceFile = new File(trace.getPath());
+        fTraceSize = traceFile.length();
+        fTraceModified = traceFile.lastModified();
+    }
+
+    /**
+     * @return Series saved for this trace and version, or null if there are
+     *         none (or the file could not be read)
+     */
+    public @Nullable Map<String, GpuTimeSeriesPyramid> read() {
+        if (!fFile.exists()) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)))) {
+            if (input.readLong() != MAGIC || input.readInt() != FORMAT_VERSION || input.readInt() != fVersion || input.readLong() != fTraceSize
+                    || input.readLong() != fTraceModified) {
+                return null;
+            }
+
+            int count = input.readInt();
+            Map<String, GpuTimeSeriesPyramid> series = new LinkedHashMap<>();
+            for (int i = 0; i < count; ++i) {
+                String name = input.readUTF();
+                series.put(name, GpuTimeSeriesPyramid.read(input));
+            }
+            return series;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param series
+     *            Series to save, replacing the previous ones
+     * @return True if the series were saved
+     */
+    public boolean write(Map<String, GpuTimeSeriesPyramid> series) {
+        // Written aside then moved, a reader never sees a partial file
+        File temporary = new File(fFile.getPath() + ".tmp"); //$NON-NLS-1$
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeLong(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(fVersion);
+            output.writeLong(fTraceSize);
+            output.writeLong(fTraceModified);
+
+            output.writeInt(series.size());
+            for (Map.Entry<String, GpuTimeSeriesPyramid> entry : series.entrySet()) {
+                output.writeUTF(entry.getKey());
+                entry.getValue().write(output);
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            return false;
+        }
+
+        try {
+            Files.move(temporary.toPath(), fFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            temporary.delete();
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,394 @@
+package org.eclipse.tracecompass.incubator.gpu.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.dataprovider.DataProviderParameterUtils;
+import org.eclipse.tracecompass.tmf.core.model.YModel;
+import org.eclipse.tracecompass.tmf.core.model.xy.IYModel;
+
+/**
+ * @brief Multi-resolution summary of a time series sampled at a fixed
+ *        period. Level k holds the minimum, maximum and sum of each run of 2^k
+ *        samples (the count is implied by the level), so that any range of
+ *        samples is summarized from O(log n) buckets. With a power of two
+ *        period, the buckets of each level are 2^k ns wide. Levels under
+ *        MIN_LEVEL are not stored : a few samples are read instead. The
+ *        value of a sample holds until the next one.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class GpuTimeSeriesPyramid {
+
+    /**
+     * @brief Fetch parameter (Boolean) requesting the minimum and maximum
+     *        series along with the averages. They are not entries of the tree
+     *        of the data providers, and are only returned on request
+     */
+    public static final String ENVELOPE_KEY = "gpu_envelope"; //$NON-NLS-1$
+
+    /**
+     * @brief Flag of the id of the minimum series, see addModels()
+     */
+    public static final long MIN_SERIES = 1L << 32;
+
+    /**
+     * @brief Flag of the id of the maximum series, see addModels()
+     */
+    public static final long MAX_SERIES = 1L << 33;
+
+    /**
+     * @brief First stored level. The finer levels would be as large as the
+     *        samples themselves, for little gain
+     */
+    private static final int MIN_LEVEL = 4;
+    private static final int MIN_RUN = 1 << MIN_LEVEL;
+
+    private final long fStart;
+    private final long fPeriod;
+    private final double[] fSamples;
+
+    // Index l holds the level MIN_LEVEL + l
+    private final double[][] fMin;
+    private final double[][] fMax;
+    private final double[][] fSum;
+
+    /**
+     * @param start
+     *            Time of the first sample
+     * @param period
+     *            Time between two samples
+     * @param samples
+     *            Values of the series
+     */
+    public GpuTimeSeriesPyramid(long start, long period, double[] samples) {
+        this(start, period, samples, levelsOf(samples.length));
+
+        if (fMin.length == 0) {
+            return;
+        }
+
+        // First stored level, from the samples
+        double[] min = fMin[0];
+        double[] max = fMax[0];
+        double[] sum = fSum[0];
+        for (int i = 0; i < min.length; ++i) {
+            double lo = Double.POSITIVE_INFINITY;
+            double hi = Double.NEGATIVE_INFINITY;
+            double total = 0.;
+            for (int j = i << MIN_LEVEL; j < (i + 1) << MIN_LEVEL; ++j) {
+                lo = Math.min(lo, samples[j]);
+                hi = Math.max(hi, samples[j]);
+                total += samples[j];
+            }
+            min[i] = lo;
+            max[i] = hi;
+            sum[i] = total;
+        }
+
+        for (int level = 1; level < fMin.length; ++level) {
+            double[] lowerMin = fMin[level - 1];
+            double[] lowerMax = fMax[level - 1];
+            double[] lowerSum = fSum[level - 1];
+            for (int i = 0; i < fMin[level].length; ++i) {
+                fMin[level][i] = Math.min(lowerMin[2 * i], lowerMin[2 * i + 1]);
+                fMax[level][i] = Math.max(lowerMax[2 * i], lowerMax[2 * i + 1]);
+                fSum[level][i] = lowerSum[2 * i] + lowerSum[2 * i + 1];
+            }
+        }
+    }
+
+    private GpuTimeSeriesPyramid(long start, long period, double[] samples, int levels) {
+        fStart = start;
+        fPeriod = period;
+        fSamples = samples;
+
+        fMin = new double[levels][];
+        fMax = new double[levels][];
+        fSum = new double[levels][];
+        for (int level = 0; level < levels; ++level) {
+            int size = samples.length >> (MIN_LEVEL + level);
+            fMin[level] = new double[size];
+            fMax[level] = new double[size];
+            fSum[level] = new double[size];
+        }
+    }
+
+    private static int levelsOf(int size) {
+        int levels = 0;
+        while ((size >> (MIN_LEVEL + levels)) > 0) {
+            ++levels;
+        }
+        return levels;
+    }
+
+    /**
+     * @param duration
+     *            Time covered by the series
+     * @param basePeriod
+     *            Preferred period
+     * @param maxSamples
+     *            Maximum number of samples
+     * @return The preferred period, doubled until the duration fits in the
+     *         maximum number of samples (which keeps the sample count within
+     *         an int on long traces)
+     */
+    public static long periodOf(long duration, long basePeriod, long maxSamples) {
+        long period = basePeriod;
+        while (duration / period > Math.max(1L, maxSamples)) {
+            period <<= 1;
+        }
+        return period;
+    }
+
+    /**
+     * @return Time of the first sample
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * @return Time between two samples
+     */
+    public long getPeriod() {
+        return fPeriod;
+    }
+
+    /**
+     * @return Number of samples
+     */
+    public int size() {
+        return fSamples.length;
+    }
+
+    /**
+     * @return Times of every sample
+     */
+    public long[] sampleTimes() {
+        long[] times = new long[fSamples.length];
+        for (int i = 0; i < fSamples.length; ++i) {
+            times[i] = fStart + i * fPeriod;
+        }
+        return times;
+    }
+
+    /**
+     * @brief Summarizes the series at the given times. Point i covers the
+     *        samples in [times[i], times[i + 1]), the last point as much time
+     *        as the previous one. A point narrower than a sample takes the
+     *        value of the sample holding at its time
+     *
+     * @param times
+     *            Increasing times
+     * @param min
+     *            Minimum at each point (output)
+     * @param max
+     *            Maximum at each point (output)
+     * @param avg
+     *            Average at each point (output)
+     */
+    public void query(long[] times, double[] min, double[] max, double[] avg) {
+        for (int i = 0; i < times.length; ++i) {
+            long from = times[i];
+            long to;
+            if (i + 1 < times.length) {
+                to = times[i + 1];
+            } else {
+                to = (i > 0) ? from + (from - times[i - 1]) : from;
+            }
+
+            int first = firstSampleAtOrAfter(from);
+            int last = firstSampleAtOrAfter(to);
+            if (first >= last) {
+                double value = valueAt(from);
+                min[i] = value;
+                max[i] = value;
+                avg[i] = value;
+                continue;
+            }
+
+            summarize(first, last, min, max, avg, i);
+        }
+    }
+
+    /**
+     * @brief Summarizes the samples [first, last) from the largest buckets
+     *        aligned in the range, and single samples at both ends
+     */
+    private void summarize(int first, int last, double[] min, double[] max, double[] avg, int point) {
+        double lo = Double.POSITIVE_INFINITY;
+        double hi = Double.NEGATIVE_INFINITY;
+        double sum = 0.;
+
+        int i = first;
+        while (i < last) {
+            if ((i & (MIN_RUN - 1)) != 0 || last - i < MIN_RUN) {
+                double sample = fSamples[i];
+                lo = Math.min(lo, sample);
+                hi = Math.max(hi, sample);
+                sum += sample;
+                ++i;
+                continue;
+            }
+
+            int level = Math.min(Integer.numberOfTrailingZeros(i), MIN_LEVEL + fMin.length - 1);
+            while ((1 << level) > last - i) {
+                --level;
+            }
+
+            int bucket = i >> level;
+            lo = Math.min(lo, fMin[level - MIN_LEVEL][bucket]);
+            hi = Math.max(hi, fMax[level - MIN_LEVEL][bucket]);
+            sum += fSum[level - MIN_LEVEL][bucket];
+
+            i += 1 << level;
+        }
+
+        min[point] = lo;
+        max[point] = hi;
+        avg[point] = sum / (last - first);
+    }
+
+    private int firstSampleAtOrAfter(long time) {
+        if (time <= fStart) {
+            return 0;
+        }
+        return (int) Math.min(fSamples.length, (time - fStart + fPeriod - 1) / fPeriod);
+    }
+
+    /**
+     * @return Value of the sample holding at the given time, 0 before the
+     *         first one
+     */
+    private double valueAt(long time) {
+        if (time < fStart || fSamples.length == 0) {
+            return 0.;
+        }
+        return fSamples[(int) Math.min(fSamples.length - 1L, (time - fStart) / fPeriod)];
+    }
+
+    /**
+     * @param output
+     *            Destination of the samples and every level
+     * @throws IOException
+     *             If the pyramid could not be written
+     */
+    public void write(DataOutput output) throws IOException {
+        output.writeLong(fStart);
+        output.writeLong(fPeriod);
+        output.writeInt(fSamples.length);
+        writeDoubles(output, fSamples);
+
+        for (int level = 0; level < fMin.length; ++level) {
+            writeDoubles(output, fMin[level]);
+            writeDoubles(output, fMax[level]);
+            writeDoubles(output, fSum[level]);
+        }
+    }
+
+    /**
+     * @param input
+     *            Source, as written by write()
+     * @return Pyramid
+     * @throws IOException
+     *             If the pyramid could not be read
+     */
+    public static GpuTimeSeriesPyramid read(DataInput input) throws IOException {
+        long start = input.readLong();
+        long period = input.readLong();
+        int size = input.readInt();
+        if (size < 0 || period <= 0) {
+            throw new IOException("Invalid time series"); //$NON-NLS-1$
+        }
+
+        double[] samples = new double[size];
+        readDoubles(input, samples);
+
+        GpuTimeSeriesPyramid pyramid = new GpuTimeSeriesPyramid(start, period, samples, levelsOf(size));
+        for (int level = 0; level < pyramid.fMin.length; ++level) {
+            readDoubles(input, pyramid.fMin[level]);
+            readDoubles(input, pyramid.fMax[level]);
+            readDoubles(input, pyramid.fSum[level]);
+        }
+
+        return pyramid;
+    }
+
+    private static void writeDoubles(DataOutput output, double[] values) throws IOException {
+        for (double value : values) {
+            output.writeDouble(value);
+        }
+    }
+
+    private static void readDoubles(DataInput input, double[] values) throws IOException {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = input.readDouble();
+        }
+    }
+
+    /**
+     * @param fetchParameters
+     *            Parameters of a data provider request
+     * @return Times requested by the viewer (one per point), or null if the
+     *         request has none
+     */
+    public static long @Nullable [] requestedTimes(Map<String, Object> fetchParameters) {
+        List<Long> requested = DataProviderParameterUtils.extractTimeRequested(fetchParameters);
+        if (requested == null || requested.isEmpty()) {
+            return null;
+        }
+
+        long[] times = new long[requested.size()];
+        for (int i = 0; i < times.length; ++i) {
+            times[i] = requested.get(i);
+        }
+        return times;
+    }
+
+    /**
+     * @param fetchParameters
+     *            Parameters of a data provider request
+     * @return True if the request asks for the minimum and maximum series,
+     *         see ENVELOPE_KEY
+     */
+    public static boolean envelopeRequested(Map<String, Object> fetchParameters) {
+        return Boolean.TRUE.equals(fetchParameters.get(ENVELOPE_KEY));
+    }
+
+    /**
+     * @brief Adds the average series at the given times, and the minimum and
+     *        maximum series if requested
+     *
+     * @param models
+     *            Series of the response
+     * @param times
+     *            Requested times
+     * @param id
+     *            Id of the average series. The minimum and maximum series
+     *            have the MIN_SERIES and MAX_SERIES flags set
+     * @param name
+     *            Name of the series
+     * @param envelope
+     *            Whether to add the minimum and maximum series, see
+     *            envelopeRequested()
+     */
+    public void addModels(List<@NonNull IYModel> models, long[] times, long id, String name, boolean envelope) {
+        double[] min = new double[times.length];
+        double[] max = new double[times.length];
+        double[] avg = new double[times.length];
+        query(times, min, max, avg);
+
+        models.add(new YModel(id, name, avg));
+        if (envelope) {
+            models.add(new YModel(id | MIN_SERIES, name + " (min)", min)); //$NON-NLS-1$
+            models.add(new YModel(id | MAX_SERIES, name + " (max)", max)); //$NON-NLS-1$
+        }
+    }
+}
@@ -6,11 +6,10 @@ import java.util.Set;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.tmf.core.analysis.requirements.TmfAbstractAnalysisRequirement;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
-import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 
-public class GpuTripCountAnalysis extends TmfStateSystemAnalysisModule {
+public class GpuTripCountAnalysis extends GpuStateSystemAnalysis {
 
     public static final String ID = "org.eclipse.tracecompass.incubator.gpu.core.GpuTripCountAnalysis"; //$NON-NLS-1$
     public static final String TRIPCOUNT_VIEW_ID = "org.eclipse.tracecompass.incubator.gpu.ui.wavestate"; //$NON-NLS-1$
@@ -35,10 +34,4 @@ public class GpuTripCountAnalysis extends TmfStateSystemAnalysisModule {
         return new GpuTripCountStateProvider(Objects.requireNonNull(getTrace()), getId());
     }
 
-    @Override
-    protected StateSystemBackendType getBackendType() {
-        // Using the in-memory state system to ensure no caching (for dev.)
-        return StateSystemBackendType.INMEM;
-    }
-
 }
@@ -5,8 +5,8 @@ import java.io.IOException;
 import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.incubator.gpu.core.trace.HipAnalyzerEvent;
 import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateEvent;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -20,8 +20,8 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 public class GpuTripCountStateProvider extends AbstractTmfStateProvider {
 
-    private static final int VERSION = 0;
-    private static final String ID = "org.eclipse.tracecompass.incubator.gpu.analysis.GpuWaveStateProvider"; //$NON-NLS-1$
+    private static final int VERSION = 1;
+    private static final String ID = "org.eclipse.tracecompass.incubator.gpu.analysis.GpuTripCountStateProvider"; //$NON-NLS-1$
 
     /**
      * @brief Default output file
@@ -86,7 +86,7 @@ public class GpuTripCountStateProvider extends AbstractTmfStateProvider {
 
     @Override
     public @NonNull ITmfStateProvider getNewInstance() {
-        return new GpuWaveStateProvider(getTrace(), ID);
+        return new GpuTripCountStateProvider(getTrace(), ID);
     }
 
     @Override
@@ -110,8 +110,9 @@ public class GpuTripCountStateProvider extends AbstractTmfStateProvider {
     protected void handleHipTraceEvent(@NonNull ITmfEvent event) {
         ITmfTimestamp stamp = event.getTimestamp();
 
-        if (event.getType().getName().equals(HipAnalyzerEvent.HipWaveState.name())) {
-            HipTrace.EventsHeader header = (HipTrace.EventsHeader) event.getContent().getField("header").getValue(); //$NON-NLS-1$
+        if (event instanceof HipWaveStateEvent) {
+            HipWaveStateEvent waveState = (HipWaveStateEvent) event;
+            HipTrace.EventsHeader header = waveState.getHeader();
             if (newEvents) {
                 storedQuarks = new StoredQuarks[(int) header.parallelism()];
 
@@ -120,12 +121,8 @@ public class GpuTripCountStateProvider extends AbstractTmfStateProvider {
 
             ITmfStateSystemBuilder ss = Objects.requireNonNull(getStateSystemBuilder());
 
-            ITmfEventField content = event.getContent();
-
-            long bb = (Long) content.getField("bb").getValue(); //$NON-NLS-1$
-            ITmfEventField pos = content.getField("producer_id"); //$NON-NLS-1$
-
-            int id = (int) HipTrace.producerIdFromGeometry(header, pos);
+            long bb = waveState.getBasicBlock();
+            int id = (int) waveState.getProducerId();
             if (storedQuarks[id] == null) {
                 storedQuarks[id] = new StoredQuarks(id);
             }
@@ -150,7 +147,7 @@ public class GpuTripCountStateProvider extends AbstractTmfStateProvider {
                             .append(contentStart.getField("block").getValue()).append(',')
                             .append(contentStart.getField("wave").getValue()).append(',')
                             .append(tripCount).append(',')
-                            .append(content.getField("stamp").getValue()).append('\n')
+                            .append(waveState.getStamp()).append('\n')
                             .toString());
                         writer.flush();
                     } catch (IOException e) {
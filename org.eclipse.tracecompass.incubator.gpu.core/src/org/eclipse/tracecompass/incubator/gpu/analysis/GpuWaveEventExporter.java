@@ -2,22 +2,19 @@ package org.eclipse.tracecompass.incubator.gpu.analysis;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.incubator.gpu.core.trace.GcnAsmParser;
 import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateColumns;
 import org.eclipse.tracecompass.internal.tmf.core.model.tree.AbstractTreeDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
-import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
-import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataProvider;
@@ -72,16 +69,13 @@ public class GpuWaveEventExporter extends AbstractTreeDataProvider<@NonNull GpuW
     public @NonNull TmfModelResponse<@NonNull ITmfXyModel> fetchXY(@NonNull Map<@NonNull String, @NonNull Object> fetchParameters, @Nullable IProgressMonitor monitor) {
         IProgressMonitor mon = monitor != null ? monitor : new NullProgressMonitor();
 
-        GpuWaveStateAnalysis module = getAnalysisModule();
+        ITmfTrace trace = getTrace();
 
-        ITmfStateSystem ss = module.getStateSystem();
-
-        if (ss == null) {
+        if (!(trace instanceof HipTrace)) {
             return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, CommonStatusMessage.ANALYSIS_INITIALIZATION_FAILED);
         }
 
-        @SuppressWarnings("nls")
-        List<@NonNull Integer> eventsQuarks = ss.getQuarks("waves", "*", "content");
+        HipTrace hipTrace = (HipTrace) trace;
 
         FileWriter writer;
         try {
@@ -94,46 +88,41 @@ public class GpuWaveEventExporter extends AbstractTreeDataProvider<@NonNull GpuW
 
         try {
             writer.write("gpu_stamp,bb,block,wave,exec,duration\n"); //$NON-NLS-1$
-        } catch (IOException e2) {
-        }
-
-        try {
-            Iterable<@NonNull ITmfStateInterval> intervals = ss.query2D(eventsQuarks, ss.getStartTime(), ss.getCurrentEndTime());
-
-            for (ITmfStateInterval interval : intervals) {
-                ITmfEventField event = (ITmfEventField) interval.getValue();
 
-                if (event == null) {
+            StringBuilder line = new StringBuilder();
+            for (HipTrace.EventsHeader launch : hipTrace.getWaveStateHeaders()) {
+                if (launch.isThread()) {
                     continue;
                 }
 
-                if(((HipTrace.EventsHeader)event.getField("header").getValue()).isThread()) { //$NON-NLS-1$
+                HipWaveStateColumns columns = hipTrace.getWaveStateColumns(launch);
+                if (columns == null || columns.size() == 0) {
                     continue;
                 }
 
-                Long bb = (Long) event.getField("bb").getValue(); //$NON-NLS-1$
-                if (bb == -1) {
-                    continue;
-                }
-
-                GcnAsmParser.ExecRegister exec = (GcnAsmParser.ExecRegister) event.getField("exec").getValue(); //$NON-NLS-1$
-                Integer active = exec.activeThreads();
-
-                ITmfEventField producer = event.getField("producer_id");
+                long wavesPerBlock = HipTrace.wavesPerBlocks(launch.counters.configuration.geometry);
 
-                long duration = interval.getEndTime() - interval.getStartTime();
+                // A record lasts until the next record of the same wave. The
+                // previous record of each wave is pending until then
+                int[] pending = new int[columns.numProducers()];
+                Arrays.fill(pending, -1);
 
-                writer.write(new StringBuilder().append(event.getField("stamp").getValue()).append(',')
-                        .append(bb).append(',')
-                        .append(producer.getField("block").getValue()).append(',')
-                        .append(producer.getField("wave").getValue()).append(',')
-                        .append(exec.get()).append(',')
-                        .append(duration).append('\n')
-                        .toString());
+                for (int i = 0; i < columns.size(); ++i) {
+                    int producer = (int) columns.producer(i);
+                    if (pending[producer] != -1) {
+                        writeRecord(writer, line, columns, pending[producer], columns.time(i), wavesPerBlock);
+                    }
+                    pending[producer] = (columns.basicBlock(i) != -1) ? i : -1;
+                }
 
+                long end = columns.time(columns.size() - 1);
+                for (int record : pending) {
+                    if (record != -1) {
+                        writeRecord(writer, line, columns, record, end, wavesPerBlock);
+                    }
+                }
             }
-
-        } catch (IndexOutOfBoundsException | TimeRangeException | StateSystemDisposedException e) {
+        } catch (IOException e) {
             try {
                 writer.close();
             } catch (IOException e1) {
@@ -141,8 +130,6 @@ public class GpuWaveEventExporter extends AbstractTreeDataProvider<@NonNull GpuW
             return new TmfModelResponse<>(null,
                     ITmfResponse.Status.FAILED,
                     CommonStatusMessage.STATE_SYSTEM_FAILED);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
         try {
@@ -155,6 +142,20 @@ public class GpuWaveEventExporter extends AbstractTreeDataProvider<@NonNull GpuW
         return new TmfModelResponse<>(null, Status.COMPLETED, CommonStatusMessage.COMPLETED); // $NON-NLS-1$
     }
 
+    private static void writeRecord(FileWriter writer, StringBuilder line, HipWaveStateColumns columns, int record, long end, long wavesPerBlock) throws IOException {
+        long producer = columns.producer(record);
+
+        line.setLength(0);
+        line.append(columns.stamp(record)).append(',')
+                .append(columns.basicBlock(record)).append(',')
+                .append(producer / wavesPerBlock).append(',')
+                .append(producer % wavesPerBlock).append(',')
+                .append(columns.exec(record)).append(',')
+                .append(end - columns.time(record)).append('\n');
+
+        writer.write(line.toString());
+    }
+
     @Override
     protected boolean isCacheable() {
         return true;
@@ -3,25 +3,24 @@
  */
 package org.eclipse.tracecompass.incubator.gpu.analysis;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateColumns;
 import org.eclipse.tracecompass.internal.tmf.core.model.tree.AbstractTreeDataProvider;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
-import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
-import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.model.CommonStatusMessage;
 import org.eclipse.tracecompass.tmf.core.model.TmfCommonXAxisModel;
-import org.eclipse.tracecompass.tmf.core.model.YModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataModel;
 import org.eclipse.tracecompass.tmf.core.model.tree.ITmfTreeDataProvider;
 import org.eclipse.tracecompass.tmf.core.model.tree.TmfTreeDataModel;
@@ -47,9 +46,28 @@ public class GpuWaveLifetimeDataProvider extends AbstractTreeDataProvider<@NonNu
     public static final String ID = "org.eclipse.tracecompass.incubator.gpu.analysis.GpuWaveLifetimeDataProvider"; //$NON-NLS-1$
 
     /**
-     * @brief Sampling period to avoid computing each interval
+     * @brief Sampling period to avoid computing each interval (~2 us, a power
+     *        of two so that the summary levels are 2^k ns wide)
      */
-    private static final long SAMPLING_NS = 2_500L;
+    private static final long SAMPLING_NS = 1L << 11;
+
+    /**
+     * @brief Maximum number of samples of a series, the sampling period is
+     *        increased (by powers of two) on long traces
+     */
+    private static final long MAX_SAMPLES = 1L << 22;
+
+    /**
+     * @brief Summaries saved in the supplementary files
+     */
+    private static final String SERIES_FILE = "gpu_wave_lifetime.series"; //$NON-NLS-1$
+    private static final int SERIES_VERSION = 1;
+
+    private static final String FINISHED = "finished"; //$NON-NLS-1$
+    private static final String ACTIVE = "active"; //$NON-NLS-1$
+    private static final String FLOPS = "flops"; //$NON-NLS-1$
+
+    private @Nullable LifetimeSeries fSeries = null;
 
     /**
      * @param trace
@@ -80,101 +98,203 @@ public class GpuWaveLifetimeDataProvider extends AbstractTreeDataProvider<@NonNu
     public @NonNull TmfModelResponse<@NonNull ITmfXyModel> fetchXY(@NonNull Map<@NonNull String, @NonNull Object> fetchParameters, @Nullable IProgressMonitor monitor) {
         IProgressMonitor mon = monitor != null ? monitor : new NullProgressMonitor();
 
-        GpuWaveStateAnalysis module = getAnalysisModule();
-
-        ITmfStateSystem ss = module.getStateSystem();
+        ITmfTrace trace = getTrace();
 
-        if (ss == null) {
+        if (!(trace instanceof HipTrace)) {
             return new TmfModelResponse<>(null, ITmfResponse.Status.FAILED, CommonStatusMessage.ANALYSIS_INITIALIZATION_FAILED);
         }
 
-        // ----- Sampling time ----- //
+        LifetimeSeries series = getSeries((HipTrace) trace, mon);
 
-        long begin = ss.getStartTime();
-        long end = ss.getCurrentEndTime();
+        // Requested points, the whole trace at the sampling period otherwise
+        long[] times = GpuTimeSeriesPyramid.requestedTimes(fetchParameters);
+        if (times == null) {
+            times = series.wavesActive.sampleTimes();
+        }
 
-        int size = (int) ((end - begin) / SAMPLING_NS);
-        long[] times = new long[size];
+        boolean envelope = GpuTimeSeriesPyramid.envelopeRequested(fetchParameters);
+        List<@NonNull IYModel> models = new ArrayList<>();
+        series.wavesFinished.addModels(models, times, 0, "Cumulative waves", envelope); //$NON-NLS-1$
+        series.wavesActive.addModels(models, times, 1, "Active waves", envelope); //$NON-NLS-1$
+        series.totalFlops.addModels(models, times, 2, "Kernel throughput (FLOP/s)", envelope); //$NON-NLS-1$
 
-        long t = begin;
-        for (int i = 0; i < size; ++i) {
-            times[i] = t;
-            t += SAMPLING_NS;
+        mon.done();
+        return new TmfModelResponse<>(new TmfCommonXAxisModel("GPU Wave Lifetime Analysis", times, models), Status.COMPLETED, CommonStatusMessage.COMPLETED); //$NON-NLS-1$
+    }
+
+    /**
+     * @brief Summaries of the lifetime series, queried at any resolution
+     */
+    private static final class LifetimeSeries {
+        private final GpuTimeSeriesPyramid wavesFinished;
+        private final GpuTimeSeriesPyramid wavesActive;
+        private final GpuTimeSeriesPyramid totalFlops;
+
+        private LifetimeSeries(GpuTimeSeriesPyramid wavesFinished, GpuTimeSeriesPyramid wavesActive, GpuTimeSeriesPyramid totalFlops) {
+            this.wavesFinished = wavesFinished;
+            this.wavesActive = wavesActive;
+            this.totalFlops = totalFlops;
         }
 
-        // ----- Create models ----- //
+        private LifetimeSeries(LifetimeBuckets buckets) {
+            this(new GpuTimeSeriesPyramid(buckets.begin, buckets.period, buckets.wavesFinished),
+                    new GpuTimeSeriesPyramid(buckets.begin, buckets.period, buckets.wavesActive),
+                    new GpuTimeSeriesPyramid(buckets.begin, buckets.period, buckets.totalFlops));
+        }
 
-        mon.beginTask("Process states..", size); //$NON-NLS-1$
+        private static @Nullable LifetimeSeries fromMap(Map<String, GpuTimeSeriesPyramid> series) {
+            GpuTimeSeriesPyramid finished = series.get(FINISHED);
+            GpuTimeSeriesPyramid active = series.get(ACTIVE);
+            GpuTimeSeriesPyramid flops = series.get(FLOPS);
+            if (finished == null || active == null || flops == null) {
+                return null;
+            }
+            return new LifetimeSeries(finished, active, flops);
+        }
 
-        // Cumulative waves
+        private Map<String, GpuTimeSeriesPyramid> toMap() {
+            Map<String, GpuTimeSeriesPyramid> series = new LinkedHashMap<>();
+            series.put(FINISHED, wavesFinished);
+            series.put(ACTIVE, wavesActive);
+            series.put(FLOPS, totalFlops);
+            return series;
+        }
+    }
 
-        double[] wavesFinished = new double[size];
-        double[] wavesActive = new double[size];
-        double[] totalFlops = new double[size];
+    /**
+     * @brief Wave counts and throughput, sampled every period over the whole
+     *        trace
+     */
+    private static final class LifetimeBuckets {
+        private final long begin;
+        private final long period;
+        private final double[] wavesFinished;
+        private final double[] wavesActive;
+        private final double[] totalFlops;
+
+        private LifetimeBuckets(long begin, long period, int size) {
+            this.begin = begin;
+            this.period = period;
+            wavesFinished = new double[size];
+            wavesActive = new double[size];
+            totalFlops = new double[size];
+        }
+    }
 
-        @SuppressWarnings("nls")
-        @NonNull
-        List<@NonNull Integer> contentQuarks = ss.getQuarks("waves", "*", "content");
+    /**
+     * @brief The series are computed on the first request once the trace is
+     *        complete and saved with the trace, later requests (e.g. zooming)
+     *        only query their summaries
+     */
+    private synchronized LifetimeSeries getSeries(HipTrace trace, IProgressMonitor monitor) {
+        LifetimeSeries series = fSeries;
+        if (series != null) {
+            return series;
+        }
 
-        try {
-            List<Long> timesList = Arrays.stream(times).boxed().collect(Collectors.toList());
-            Iterable<@NonNull ITmfStateInterval> intervals = ss.query2D(contentQuarks, timesList);
+        // A trace still being written (live mode) would give a partial summary
+        if (!trace.isComplete()) {
+            return new LifetimeSeries(computeBuckets(trace, monitor));
+        }
 
-            for (ITmfStateInterval interval : intervals) {
-                ITmfEventField event = (ITmfEventField) interval.getValue();
+        GpuTimeSeriesFile file = new GpuTimeSeriesFile(trace, SERIES_FILE, SERIES_VERSION);
+        Map<String, GpuTimeSeriesPyramid> saved = file.read();
+        if (saved != null) {
+            series = LifetimeSeries.fromMap(saved);
+        }
 
-                if (event == null) {
-                    continue;
-                }
-                Long bb = (Long) event.getField("bb").getValue();
+        if (series == null) {
+            series = new LifetimeSeries(computeBuckets(trace, monitor));
+            file.write(series.toMap());
+        }
 
-                long currentTime = interval.getStartTime();
-                int i = (int) ((currentTime - begin) / SAMPLING_NS);
+        fSeries = series;
+        return series;
+    }
 
-                if (bb == null) {
-                    // Nothing to do, uninitialized
-                } else if (bb != -1) {
-                    // Valid basic block, currently active
-                    ++wavesActive[i];
+    /**
+     * @brief Sweep-line over the wave state records. A wave is active from
+     *        its first basic block until its bb == -1 record; each change is
+     *        written as a delta at the first sample it affects, and the
+     *        deltas are prefix-summed into exact counts at every sample
+     */
+    private static LifetimeBuckets computeBuckets(HipTrace trace, IProgressMonitor monitor) {
+        List<HipWaveStateColumns> launches = new ArrayList<>();
+        long begin = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+
+        for (HipTrace.EventsHeader header : trace.getWaveStateHeaders()) {
+            HipWaveStateColumns columns = trace.getWaveStateColumns(header);
+            if (columns != null && columns.size() != 0) {
+                launches.add(columns);
+                begin = Math.min(begin, columns.time(0));
+                end = Math.max(end, columns.time(columns.size() - 1));
+            }
+        }
 
-                    // Compute active flops
-                    if (bb == 0) { // TEMPORARY, need to query basic block
-                                   // db (hip-analyzer report)
+        long period = launches.isEmpty() ? SAMPLING_NS : GpuTimeSeriesPyramid.periodOf(end - begin, SAMPLING_NS, MAX_SAMPLES);
+        int size = launches.isEmpty() ? 0 : (int) ((end - begin) / period);
+        LifetimeBuckets buckets = new LifetimeBuckets(begin, period, size);
 
-                        // stampMemory interval represents how long we
-                        // stayed in the basic block
-                        double diff = ((double) interval.getEndTime() - interval.getStartTime()) / 1.e6;
-                        totalFlops[i] += 1 / diff; // #Flop / t (second)
-                    }
+        monitor.beginTask("Process states..", launches.size()); //$NON-NLS-1$
+
+        // One extra slot : changes after the last sample
+        double[] finishedDelta = new double[size + 1];
+        double[] activeDelta = new double[size + 1];
 
-                } else {
+        for (HipWaveStateColumns columns : launches) {
+            // Record each wave is currently in, until its next one
+            int[] current = new int[columns.numProducers()];
+            Arrays.fill(current, -1);
+
+            for (int i = 0; i < columns.size(); ++i) {
+                long currentTime = columns.time(i);
+                int producer = (int) columns.producer(i);
+                int previous = current[producer];
+
+                boolean wasActive = previous != -1 && columns.basicBlock(previous) != -1;
+                boolean active = columns.basicBlock(i) != -1;
+
+                // First sample at or after the change
+                int sample = (int) Math.min(size, (currentTime - begin + period - 1) / period);
+
+                if (active != wasActive) {
+                    activeDelta[sample] += active ? 1 : -1;
+                }
+                if (wasActive && !active) {
                     // bb == -1, by convention the wave is finished
-                    ++wavesFinished[i];
+                    ++finishedDelta[sample];
                 }
+
+                if (wasActive && columns.basicBlock(previous) == 0) {
+                    // TEMPORARY, need to query basic block db (hip-analyzer
+                    // report). The time between both records is how long we
+                    // stayed in the basic block
+                    long previousTime = columns.time(previous);
+                    int bucket = (int) ((previousTime - begin) / period);
+                    if (bucket < size) {
+                        double diff = ((double) currentTime - previousTime) / 1.e6;
+                        buckets.totalFlops[bucket] += 1 / diff; // #Flop / t (second)
+                    }
+                }
+
+                current[producer] = i;
             }
 
-        } catch (IndexOutOfBoundsException | TimeRangeException | StateSystemDisposedException e) {
-            return new TmfModelResponse<>(null,
-                    ITmfResponse.Status.FAILED,
-                    CommonStatusMessage.STATE_SYSTEM_FAILED);
+            monitor.worked(1);
         }
 
-        // Prefix sum, could be wrong as intervals may be returned multiple
-        // times. The query2D doc is unclear on this
-        double cumulatedFinished = 0.;
+        // Prefix sums
+        double finished = 0.;
+        double active = 0.;
         for (int i = 0; i < size; ++i) {
-            cumulatedFinished += wavesFinished[i];
-            wavesFinished[i] = cumulatedFinished;
+            finished += finishedDelta[i];
+            active += activeDelta[i];
+            buckets.wavesFinished[i] = finished;
+            buckets.wavesActive[i] = active;
         }
 
-        YModel cumulativeWaves = new YModel(0, "Cumulative waves", wavesFinished); //$NON-NLS-1$
-        YModel activeWaves = new YModel(1, "Active waves", wavesActive); //$NON-NLS-1$
-        YModel flopsTotal = new YModel(2, "Kernel throughput (FLOP/s)", totalFlops); //$NON-NLS-1$
-
-        List<@NonNull IYModel> models = List.of(cumulativeWaves, activeWaves, flopsTotal);
-
-        mon.done();
-        return new TmfModelResponse<>(new TmfCommonXAxisModel("GPU Wave Lifetime Analysis", times, models), Status.COMPLETED, CommonStatusMessage.COMPLETED); //$NON-NLS-1$
+        return buckets;
     }
 
     @Override
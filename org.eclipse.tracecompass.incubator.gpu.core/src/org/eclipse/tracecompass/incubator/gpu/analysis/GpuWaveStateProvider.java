@@ -1,13 +1,17 @@
 package org.eclipse.tracecompass.incubator.gpu.analysis;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.tracecompass.incubator.gpu.core.trace.HipAnalyzerEvent;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.GcnAsmParser;
 import org.eclipse.tracecompass.incubator.gpu.core.trace.HipTrace;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateColumns;
+import org.eclipse.tracecompass.incubator.gpu.core.trace.HipWaveStateEvent;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
-import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -20,32 +24,54 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  */
 public class GpuWaveStateProvider extends AbstractTmfStateProvider {
 
-    private static final int VERSION = 0;
+    private static final int VERSION = 4;
     private static final String ID = "org.eclipse.tracecompass.incubator.gpu.analysis.GpuWaveStateProvider"; //$NON-NLS-1$
 
+    /**
+     * @brief Execution mask of a wave (long), under waves/{id}
+     */
+    public static final String EXEC_ATTRIBUTE = "exec"; //$NON-NLS-1$
+
+    /**
+     * @brief Raw hardware id register of a wave (long), under waves/{id}
+     */
+    public static final String HW_ID_ATTRIBUTE = "hw_id"; //$NON-NLS-1$
+
+    /**
+     * @brief Number of active waves of each SIMD (int), under
+     *        occupancy/{se}/{sh}/{cu}/{simd}. The counts of the compute units,
+     *        shader arrays and engines are the sums of their SIMDs
+     */
+    public static final String OCCUPANCY_ATTRIBUTE = "occupancy"; //$NON-NLS-1$
+
     private static int DEFAULT_QUARK = -1;
     private int activeWavesQuark = DEFAULT_QUARK;
 
     public class StoredQuarks {
         private int waveQuark;
-        private int valueQuark;
+        private int execQuark;
+        private int hwIdQuark;
 
         public StoredQuarks(int id) {
             ITmfStateSystemBuilder ss = Objects.requireNonNull(getStateSystemBuilder());
             waveQuark = ss.getQuarkRelativeAndAdd(activeWavesQuark, String.valueOf(id));
 
-            // It is much easier to store directly the value than creating
-            // sub-attributes. What's more, it reduces stress on the (probably)
-            // overloaded state system by using less quarks
-            valueQuark = ss.getQuarkRelativeAndAdd(waveQuark, "content"); //$NON-NLS-1$
+            // Only primitive values are stored, which any backend can
+            // serialize. The basic block is the value of the wave itself
+            execQuark = ss.getQuarkRelativeAndAdd(waveQuark, EXEC_ATTRIBUTE);
+            hwIdQuark = ss.getQuarkRelativeAndAdd(waveQuark, HW_ID_ATTRIBUTE);
         }
 
         public int getWaveQuark() {
             return waveQuark;
         }
 
-        public int getValueQuark() {
-            return valueQuark;
+        public int getExecQuark() {
+            return execQuark;
+        }
+
+        public int getHwIdQuark() {
+            return hwIdQuark;
         }
     }
 
@@ -53,6 +79,26 @@ public class GpuWaveStateProvider extends AbstractTmfStateProvider {
 
     boolean newEvents = false;
 
+    /**
+     * @brief Active waves counter of a SIMD
+     */
+    private static class SimdCounter {
+        private final int quark;
+        private int activeWaves = 0;
+
+        private SimdCounter(int quark) {
+            this.quark = quark;
+        }
+    }
+
+    // SIMDs, by se, sh, cu and simd bits of the hardware id
+    private final Map<Long, SimdCounter> simds = new HashMap<>();
+    private long occupancyEnd = Long.MIN_VALUE;
+
+    // SIMD of each wave of the current launch, when following the events
+    private SimdCounter @Nullable [] currentSimds = null;
+    private long launchEnd = Long.MIN_VALUE;
+
     /**
      * @param trace
      *            Trace
@@ -94,28 +140,44 @@ public class GpuWaveStateProvider extends AbstractTmfStateProvider {
     protected void handleHipTraceEvent(@NonNull ITmfEvent event) {
         ITmfTimestamp stamp = event.getTimestamp();
 
-        if (event.getType().getName().equals(HipAnalyzerEvent.HipWaveState.name())) {
-            HipTrace.EventsHeader header = (HipTrace.EventsHeader) event.getContent().getField("header").getValue(); //$NON-NLS-1$
+        if (event instanceof HipWaveStateEvent) {
+            HipWaveStateEvent waveState = (HipWaveStateEvent) event;
+            HipTrace.EventsHeader header = waveState.getHeader();
+            ITmfStateSystemBuilder ss = Objects.requireNonNull(getStateSystemBuilder());
             if (newEvents) {
                 storedQuarks = new StoredQuarks[(int) header.parallelism()];
+                endLaunch(ss);
+
+                ITmfTrace trace = getTrace();
+                if (trace instanceof HipTrace && ((HipTrace) trace).isTimeOrdered()) {
+                    currentSimds = new SimdCounter[(int) header.parallelism()];
+                } else {
+                    replayOccupancy(ss, header);
+                }
 
                 newEvents = false;
             }
 
-            ITmfStateSystemBuilder ss = Objects.requireNonNull(getStateSystemBuilder());
-
-            ITmfEventField content = event.getContent();
-
-            long bb = (Long) content.getField("bb").getValue(); //$NON-NLS-1$
-            ITmfEventField pos = content.getField("producer_id"); //$NON-NLS-1$
-
-            int id = (int) HipTrace.producerIdFromGeometry(header, pos);
+            int bb = (int) waveState.getBasicBlock();
+            int id = (int) waveState.getProducerId();
             if (storedQuarks[id] == null) {
                 storedQuarks[id] = new StoredQuarks(id);
             }
 
-            ss.modifyAttribute(stamp.getValue(), bb, storedQuarks[id].getWaveQuark());
-            ss.modifyAttribute(stamp.getValue(), content, storedQuarks[id].getValueQuark());
+            long time = stamp.getValue();
+            ss.modifyAttribute(time, bb, storedQuarks[id].getWaveQuark());
+            ss.modifyAttribute(time, waveState.getExec(), storedQuarks[id].getExecQuark());
+            ss.modifyAttribute(time, waveState.getHwId(), storedQuarks[id].getHwIdQuark());
+
+            SimdCounter[] current = currentSimds;
+            if (current != null) {
+                SimdCounter next = (bb != -1) ? simdOf(ss, waveState.getHwId()) : null;
+                if (next != current[id]) {
+                    moveWave(ss, Math.max(time, occupancyEnd), current[id], next);
+                    current[id] = next;
+                }
+                launchEnd = Math.max(launchEnd, time);
+            }
 
         } else if (event.getType().getName().equals("hiptrace_counters")) { //$NON-NLS-1$
             // The next events are from a different kernel launch, need to
@@ -124,4 +186,111 @@ public class GpuWaveStateProvider extends AbstractTmfStateProvider {
         }
     }
 
+    @Override
+    public void done() {
+        ITmfStateSystemBuilder ss = getStateSystemBuilder();
+        if (ss != null) {
+            endLaunch(ss);
+        }
+        super.done();
+    }
+
+    /**
+     * @brief Waves of the launch followed from the events which never
+     *        reported their end are released with the launch. Launches are
+     *        expected to run one after the other : a launch overlapping the
+     *        previous one is counted from its end
+     */
+    private void endLaunch(ITmfStateSystemBuilder ss) {
+        SimdCounter[] current = currentSimds;
+        if (current == null) {
+            return;
+        }
+
+        long end = Math.max(launchEnd, occupancyEnd);
+        for (SimdCounter counter : current) {
+            if (counter != null) {
+                moveWave(ss, end, counter, null);
+            }
+        }
+
+        occupancyEnd = end;
+        currentSimds = null;
+        launchEnd = Long.MIN_VALUE;
+    }
+
+    /**
+     * @brief Updates the active waves counters of the SIMDs with a whole
+     *        kernel launch, replayed in time order from the wave state
+     *        columns. Only used when the events are delivered producer by
+     *        producer (see HipTrace.TIME_ORDERED_PROPERTY), which does not
+     *        suit counters shared by many waves : the counters otherwise
+     *        follow the events
+     *
+     * @param ss
+     *            State system builder
+     * @param header
+     *            Header of the hip::WaveState block of the launch
+     */
+    private void replayOccupancy(ITmfStateSystemBuilder ss, HipTrace.EventsHeader header) {
+        ITmfTrace trace = getTrace();
+        if (!(trace instanceof HipTrace)) {
+            return;
+        }
+
+        HipWaveStateColumns columns = ((HipTrace) trace).getWaveStateColumns(header);
+        if (columns == null || columns.size() == 0) {
+            return;
+        }
+
+        SimdCounter[] current = new SimdCounter[columns.numProducers()];
+
+        for (int i = 0; i < columns.size(); ++i) {
+            int producer = (int) columns.producer(i);
+            SimdCounter next = (columns.basicBlock(i) != -1) ? simdOf(ss, columns.hwId(i)) : null;
+
+            if (next != current[producer]) {
+                long time = Math.max(columns.time(i), occupancyEnd);
+                moveWave(ss, time, current[producer], next);
+                current[producer] = next;
+            }
+        }
+
+        // Waves which never reported their end are released with the launch
+        long end = Math.max(columns.time(columns.size() - 1), occupancyEnd);
+        for (SimdCounter counter : current) {
+            if (counter != null) {
+                moveWave(ss, end, counter, null);
+            }
+        }
+
+        occupancyEnd = end;
+    }
+
+    private static void moveWave(ITmfStateSystemBuilder ss, long time, @Nullable SimdCounter from, @Nullable SimdCounter to) {
+        if (from != null) {
+            --from.activeWaves;
+            ss.modifyAttribute(time, from.activeWaves, from.quark);
+        }
+        if (to != null) {
+            ++to.activeWaves;
+            ss.modifyAttribute(time, to.activeWaves, to.quark);
+        }
+    }
+
+    private SimdCounter simdOf(ITmfStateSystemBuilder ss, long hardwareIdRegister) {
+        GcnAsmParser.HardwareIdRegister hwId = new GcnAsmParser.HardwareIdRegister(hardwareIdRegister);
+        Long key = (hwId.seId() << 7) | (hwId.shId() << 6) | (hwId.cuId() << 2) | hwId.simdId();
+
+        SimdCounter counter = simds.get(key);
+        if (counter == null) {
+            int quark = ss.getQuarkAbsoluteAndAdd(OCCUPANCY_ATTRIBUTE, String.valueOf(hwId.seId()), String.valueOf(hwId.shId()), String.valueOf(hwId.cuId()),
+                    String.valueOf(hwId.simdId()));
+            counter = new SimdCounter(quark);
+            simds.put(key, counter);
+        }
+
+        return counter;
+    }
+
 }
@@ -13,7 +13,13 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
  */
 public class GcnAsmParser {
 
-    private static long MEMREALTIME_FREQ = 25000000L;
+    private static final long MEMREALTIME_FREQ = 25000000L;
+
+    /**
+     * @brief Duration of a s_memrealtime tick (40 ns). The frequency divides a
+     *        second, the conversion is then exact in integer arithmetic
+     */
+    private static final long NANOS_PER_TICK = 1000000000L / MEMREALTIME_FREQ;
 
     /**
      * @param reg
@@ -76,6 +82,10 @@ public class GcnAsmParser {
             this.hwId = hwId;
         }
 
+        public long simdId() {
+            return extractBits(hwId, 4, 5);
+        }
+
         public long cuId() {
             return extractBits(hwId, 8, 11);
         }
@@ -134,26 +144,41 @@ public class GcnAsmParser {
         }
     }
 
+    /**
+     * @param ticks
+     *            Number of s_memrealtime ticks
+     * @return Corresponding duration, in nanoseconds
+     */
+    public static long ticksToNanos(long ticks) {
+        return ticks * NANOS_PER_TICK;
+    }
+
     /**
      * @param sMemRealtime
      *            S_MEMREALTIME Register value
      * @param header
      *            Event header
-     * @return Absolute ITmfTimestamp computed from the offset
+     * @return Absolute time in nanoseconds, computed from the earliest stamp
+     *         of the block (resolved by the indexer). It does not depend on
+     *         the order in which the events are read
      */
-    public static @NonNull ITmfTimestamp getStampNanos(long sMemRealtime, HipTrace.EventsHeader header) {
+    public static long stampNanos(long sMemRealtime, HipTrace.EventsHeader header) {
         if (header.hasStamp()) {
-            long first = header.getFirstStamp();
-            long diffTicks = sMemRealtime - first;
-
-            double diffSeconds = ((double) diffTicks) / ((double) MEMREALTIME_FREQ);
-            long diffNanos = (long) (diffSeconds * 1.e9);
-
-            long stamp = header.counters.roctracerEnd + diffNanos;
-            return TmfTimestamp.fromNanos(stamp);
-
+            long diffTicks = sMemRealtime - header.getFirstStamp();
+            return header.counters.roctracerEnd + ticksToNanos(diffTicks);
         }
 
-        return TmfTimestamp.fromNanos(header.counters.roctracerEnd);
+        return header.counters.roctracerEnd;
+    }
+
+    /**
+     * @param sMemRealtime
+     *            S_MEMREALTIME Register value
+     * @param header
+     *            Event header
+     * @return Absolute ITmfTimestamp computed from the offset
+     */
+    public static @NonNull ITmfTimestamp getStampNanos(long sMemRealtime, HipTrace.EventsHeader header) {
+        return TmfTimestamp.fromNanos(stampNanos(sMemRealtime, header));
     }
 }
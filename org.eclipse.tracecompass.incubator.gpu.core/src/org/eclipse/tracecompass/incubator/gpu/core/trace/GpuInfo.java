@@ -72,6 +72,53 @@ public class GpuInfo {
         }
     }
 
+    /**
+     * @brief Compute topology and resources of a GCN / CDNA device (one die
+     *        for multi-die parts, as seen by the runtime)
+     */
+    public static class Architecture {
+        /**
+         * @brief Number of active compute units
+         */
+        public int num_cu;
+        /**
+         * @brief Number of shader engines
+         */
+        public int shader_engines;
+        /**
+         * @brief Number of shader arrays per shader engine
+         */
+        public int shader_arrays;
+        /**
+         * @brief Number of SIMD units per compute unit
+         */
+        public int simds_per_cu;
+        /**
+         * @brief Wave slots per SIMD
+         */
+        public int waves_per_simd;
+        /**
+         * @brief Local data share per compute unit (bytes)
+         */
+        public int lds_bytes_per_cu;
+        /**
+         * @brief Vector registers (per lane) of a SIMD, shared by its waves
+         */
+        public int vgprs_per_simd;
+        /**
+         * @brief Allocation granularity of the vector registers of a wave
+         */
+        public int vgpr_granule;
+
+        /**
+         * @return True if every field is set
+         */
+        public boolean isValid() {
+            return num_cu > 0 && shader_engines > 0 && shader_arrays > 0 && simds_per_cu > 0 && waves_per_simd > 0 && lds_bytes_per_cu > 0 && vgprs_per_simd > 0
+                    && vgpr_granule > 0;
+        }
+    }
+
     // ----- Attributes ----- //
 
     // Types
@@ -88,6 +135,11 @@ public class GpuInfo {
      * @brief List of compute roofs
      */
     public List<ComputeRoof> compute_roofs;
+    /**
+     * @brief Compute topology (optional, a known device is looked up by name
+     *        otherwise)
+     */
+    public @Nullable Architecture architecture;
 
     // ----- Methods ----- //
 
@@ -1,5 +1,7 @@
 package org.eclipse.tracecompass.incubator.gpu.core.trace;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -18,6 +20,45 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  */
 public class HipAnalyzerEvent {
 
+    /**
+     * @brief Known event types, resolved once per events header
+     */
+    public enum EventKind {
+        /** hip::Event */
+        EVENT(HipEvent.name(), 1),
+        /** hip::TaggedEvent */
+        TAGGED_EVENT(HipTaggedEvent.name(), 2),
+        /** hip::WaveState */
+        WAVE_STATE(HipWaveState.name(), 4),
+        /** Unknown event, or unexpected fields */
+        BASE(BaseEvent.name(), -1);
+
+        private final String eventName;
+        private final int numFields;
+
+        EventKind(String eventName, int numFields) {
+            this.eventName = eventName;
+            this.numFields = numFields;
+        }
+
+        /**
+         * @param eventName
+         *            Event name, as found in the events header
+         * @param numFields
+         *            Number of fields of the event
+         * @return Corresponding kind, BASE if unknown or if the fields do not
+         *         match the expected layout
+         */
+        public static EventKind of(String eventName, int numFields) {
+            for (EventKind kind : values()) {
+                if (kind.eventName.equals(eventName) && kind.numFields == numFields) {
+                    return kind;
+                }
+            }
+            return BASE;
+        }
+    }
+
     /**
      * @brief Base, unspecialized event
      */
@@ -27,9 +68,13 @@ public class HipAnalyzerEvent {
          */
         protected String name;
         /**
-         * Parsed events from the binary trace format
+         * Mapped buffer holding the binary event
+         */
+        protected ByteBuffer buffer;
+        /**
+         * Absolute index of the event in the buffer
          */
-        protected List<HipTrace.Event> events;
+        protected int index;
         /**
          * Corresponding events header
          */
@@ -64,18 +109,43 @@ public class HipAnalyzerEvent {
          *            Id of the event in the events dump
          * @param header
          *            Events header
-         * @param events
-         *            Payload
+         * @param buffer
+         *            Mapped buffer holding the payload
+         * @param index
+         *            Index of the event in the buffer
          */
-        public BaseEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, List<HipTrace.Event> events) {
+        public BaseEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
             this.name = header.eventName;
             this.header = header;
-            this.events = events;
+            this.buffer = buffer;
+            this.index = index;
             this.rank = rank;
             this.eventOffset = eventOffset;
             this.trace = trace;
         }
 
+        /**
+         * @param field
+         *            Field index
+         * @return Integral value of the field, read without allocation
+         */
+        protected long value(int field) {
+            return header.readField(buffer, index, field);
+        }
+
+        /**
+         * @return Deserialized payload, with one entry per field
+         */
+        protected List<HipTrace.Event> data() {
+            List<HipTrace.Event> data = new ArrayList<>(header.fields.size());
+            for (int i = 0; i < header.fields.size(); ++i) {
+                HipTrace.EventsHeader.Field f = header.fields.get(i);
+                Object value = ItaniumABIParser.deserializeVariable(f.kind, f.size, buffer, index + header.fieldOffset(i));
+                data.add(new HipTrace.Event(f.name, value));
+            }
+            return data;
+        }
+
         /**
          * @return Converts to TmfEvent, with relevant fields. To be overloaded.
          */
@@ -85,7 +155,7 @@ public class HipAnalyzerEvent {
             final TmfEventField[] eventsFields = {
                     new TmfEventField("type", name, null),
                     new TmfEventField("producer_id", null, header.geometryOf(eventOffset)),
-                    new TmfEventField("data", events, null),
+                    new TmfEventField("data", data(), null),
                     new TmfEventField("header", header, null)
             };
 
@@ -116,11 +186,13 @@ public class HipAnalyzerEvent {
          *            Id of the event in the events dump
          * @param header
          *            Events header
-         * @param events
-         *            Payload
+         * @param buffer
+         *            Mapped buffer holding the payload
+         * @param index
+         *            Index of the event in the buffer
          */
-        public HipEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, List<HipTrace.Event> events) {
-            super(trace, rank, eventOffset, header, events);
+        public HipEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            super(trace, rank, eventOffset, header, buffer, index);
         }
 
         @Override
@@ -128,7 +200,7 @@ public class HipAnalyzerEvent {
             final TmfEventField[] eventsFields = {
                     new TmfEventField("type", name(), null), //$NON-NLS-1$
                     new TmfEventField("producer_id", null, header.geometryOf(eventOffset)), //$NON-NLS-1$
-                    new TmfEventField("bb", (long) events.get(0).value, null), //$NON-NLS-1$
+                    new TmfEventField("bb", value(0), null), //$NON-NLS-1$
                     new TmfEventField("header", header, null) //$NON-NLS-1$
             };
 
@@ -159,13 +231,13 @@ public class HipAnalyzerEvent {
          *            Id of the event in the events dump
          * @param header
          *            Events header
-         * @param events
-         *            Payload
+         * @param buffer
+         *            Mapped buffer holding the payload
+         * @param index
+         *            Index of the event in the buffer
          */
-        public HipTaggedEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, List<HipTrace.Event> events) {
-            super(trace, rank, eventOffset, header, events);
-
-            header.registerStamp((Long) events.get(1).value);
+        public HipTaggedEvent(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            super(trace, rank, eventOffset, header, buffer, index);
         }
 
         @Override
@@ -175,14 +247,14 @@ public class HipAnalyzerEvent {
             final TmfEventField[] eventsFields = {
                     new TmfEventField("type", name(), null),
                     new TmfEventField("producer_id", null, header.geometryOf(eventOffset)),
-                    new TmfEventField("bb", (long) events.get(0).value, null),
-                    new TmfEventField("stamp", (long) events.get(1).value, null),
+                    new TmfEventField("bb", value(0), null),
+                    new TmfEventField("stamp", value(1), null),
                     new TmfEventField("header", header, null)
             };
 
             final TmfEventField root = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, eventsFields);
 
-            ITmfTimestamp tmfStamp = GcnAsmParser.getStampNanos((Long) events.get(1).value, header);
+            ITmfTimestamp tmfStamp = GcnAsmParser.getStampNanos(value(1), header);
 
             return new TmfEvent(trace, rank, tmfStamp, new TmfEventType(name(), root), root);
         }
@@ -209,38 +281,81 @@ public class HipAnalyzerEvent {
          *            Id of the event in the events dump
          * @param header
          *            Events header
-         * @param events
-         *            Payload
+         * @param buffer
+         *            Mapped buffer holding the payload
+         * @param index
+         *            Index of the event in the buffer
          */
-        public HipWaveState(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, List<HipTrace.Event> events) {
-            super(trace, rank, eventOffset, header, events);
-
-            header.registerStamp((Long) events.get(1).value);
+        public HipWaveState(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            super(trace, rank, eventOffset, header, buffer, index);
         }
 
         @Override
         public ITmfEvent toEvent() {
-            long stamp = (long) events.get(0).value;
-            long exec = (long) events.get(1).value;
-            long hw_id = (long) events.get(2).value;
-            long bb = (long) events.get(3).value;
+            long stamp = value(0);
 
-            @SuppressWarnings("nls")
-            final TmfEventField[] eventsFields = {
-                    new TmfEventField("type", name(), null),
-                    new TmfEventField("producer_id", null, header.geometryOf(eventOffset)),
-                    new TmfEventField("bb", bb, null),
-                    new TmfEventField("exec", new GcnAsmParser.ExecRegister(exec), null),
-                    new TmfEventField("stamp", stamp, null),
-                    new TmfEventField("hw_id", hw_id, new GcnAsmParser.HardwareIdRegister(hw_id).toEventFields()),
-                    new TmfEventField("header", header, null)
-            };
+            // The field tree is built lazily by the event
+            return new HipWaveStateEvent(trace, rank, GcnAsmParser.getStampNanos(stamp, header), header, eventOffset, stamp, value(1), value(2), value(3));
+        }
+    }
 
-            final TmfEventField root = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, eventsFields);
+    /**
+     * @brief Generic decoder, used when no other decoder accepts the events
+     */
+    public static class BaseEventDecoder implements IHipEventDecoder {
+        @Override
+        public boolean accepts(HipTrace.EventsHeader header) {
+            return true;
+        }
 
-            ITmfTimestamp tmfStamp = GcnAsmParser.getStampNanos(stamp, header);
+        @Override
+        public ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            return new BaseEvent(trace, rank, eventOffset, header, buffer, index).toEvent();
+        }
+    }
 
-            return new TmfEvent(trace, rank, tmfStamp, new TmfEventType(name(), root), root);
+    /**
+     * @brief Built-in decoder of hip::Event
+     */
+    public static class HipEventDecoder implements IHipEventDecoder {
+        @Override
+        public boolean accepts(HipTrace.EventsHeader header) {
+            return header.kind == EventKind.EVENT;
+        }
+
+        @Override
+        public ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            return new HipEvent(trace, rank, eventOffset, header, buffer, index).toEvent();
+        }
+    }
+
+    /**
+     * @brief Built-in decoder of hip::TaggedEvent
+     */
+    public static class HipTaggedEventDecoder implements IHipEventDecoder {
+        @Override
+        public boolean accepts(HipTrace.EventsHeader header) {
+            return header.kind == EventKind.TAGGED_EVENT;
+        }
+
+        @Override
+        public ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            return new HipTaggedEvent(trace, rank, eventOffset, header, buffer, index).toEvent();
+        }
+    }
+
+    /**
+     * @brief Built-in decoder of hip::WaveState
+     */
+    public static class HipWaveStateDecoder implements IHipEventDecoder {
+        @Override
+        public boolean accepts(HipTrace.EventsHeader header) {
+            return header.kind == EventKind.WAVE_STATE;
+        }
+
+        @Override
+        public ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+            return new HipWaveState(trace, rank, eventOffset, header, buffer, index).toEvent();
         }
     }
 
@@ -253,29 +368,14 @@ public class HipAnalyzerEvent {
      *            Event offset in the kernel events dump
      * @param header
      *            EventsHeader for this kernel launch
-     * @param events
-     *            Parsed values from the binary trace format
-     * @return TmfEvent corresponding to the event
+     * @param buffer
+     *            Mapped buffer holding the binary event
+     * @param index
+     *            Absolute index of the event in the buffer
+     * @return TmfEvent corresponding to the event, decoded by the decoder
+     *         resolved for the header
      */
-    public static ITmfEvent parse(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, List<HipTrace.Event> events) {
-        switch (header.eventName) {
-        case "hip::Event": //$NON-NLS-1$
-            if (events.size() != 1) {
-                return new BaseEvent(trace, rank, eventOffset, header, events).toEvent();
-            }
-            return new HipEvent(trace, rank, eventOffset, header, events).toEvent();
-        case "hip::TaggedEvent": //$NON-NLS-1$
-            if (events.size() != 2) {
-                return new BaseEvent(trace, rank, eventOffset, header, events).toEvent();
-            }
-            return new HipTaggedEvent(trace, rank, eventOffset, header, events).toEvent();
-        case "hip::WaveState": //$NON-NLS-1$
-            if (events.size() != 4) {
-                return new BaseEvent(trace, rank, eventOffset, header, events).toEvent();
-            }
-            return new HipWaveState(trace, rank, eventOffset, header, events).toEvent();
-        default:
-            return new BaseEvent(trace, rank, eventOffset, header, events).toEvent();
-        }
+    public static ITmfEvent parse(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index) {
+        return header.decoder.decode(trace, rank, eventOffset, header, buffer, index);
     }
 }
@@ -0,0 +1,141 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * @brief Registry of the event decoders. The decoders contributed to the
+ *        extension point (or registered programmatically) are tried first,
+ *        then the built-in ones. Events without any decoder are decoded
+ *        generically (HipAnalyzerEvent.BaseEvent).
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public final class HipEventDecoderRegistry {
+
+    /**
+     * @brief Extension point id
+     */
+    public static final String EXTENSION_POINT_ID = "org.eclipse.tracecompass.incubator.gpu.core.eventdecoder"; //$NON-NLS-1$
+
+    private static final String DECODER_ELEM = "decoder"; //$NON-NLS-1$
+    private static final String EVENT_NAME_ATTR = "eventName"; //$NON-NLS-1$
+    private static final String CLASS_ATTR = "class"; //$NON-NLS-1$
+
+    private static class Entry {
+        final String eventName;
+        final IHipEventDecoder decoder;
+
+        Entry(String eventName, IHipEventDecoder decoder) {
+            this.eventName = eventName;
+            this.decoder = decoder;
+        }
+    }
+
+    private static final IHipEventDecoder BASE_DECODER = new HipAnalyzerEvent.BaseEventDecoder();
+
+    private static @Nullable List<Entry> sDecoders = null;
+
+    private HipEventDecoderRegistry() {
+    }
+
+    /**
+     * @brief Registers a decoder, which takes precedence over the ones
+     *        already registered for the same event name
+     *
+     * @param eventName
+     *            Event name, as found in the events header
+     * @param decoder
+     *            Decoder
+     */
+    public static void register(String eventName, IHipEventDecoder decoder) {
+        getDecoders().add(0, new Entry(eventName, decoder));
+    }
+
+    /**
+     * @brief Removes a decoder previously registered
+     *
+     * @param eventName
+     *            Event name it was registered for
+     * @param decoder
+     *            Decoder
+     * @return True if the decoder was registered
+     */
+    public static boolean unregister(String eventName, IHipEventDecoder decoder) {
+        List<Entry> decoders = getDecoders();
+        for (Entry entry : decoders) {
+            if (entry.eventName.equals(eventName) && entry.decoder == decoder) {
+                return decoders.remove(entry);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param header
+     *            Events header
+     * @return First decoder registered for the event name which accepts the
+     *         fields layout, or the generic decoder
+     */
+    public static IHipEventDecoder getDecoder(HipTrace.EventsHeader header) {
+        for (Entry entry : getDecoders()) {
+            if (entry.eventName.equals(header.eventName) && entry.decoder.accepts(header)) {
+                return entry.decoder;
+            }
+        }
+        return BASE_DECODER;
+    }
+
+    private static synchronized List<Entry> getDecoders() {
+        List<Entry> decoders = sDecoders;
+        if (decoders == null) {
+            List<Entry> entries = new ArrayList<>();
+            entries.addAll(readExtensions());
+
+            entries.add(new Entry(HipAnalyzerEvent.HipEvent.name(), new HipAnalyzerEvent.HipEventDecoder()));
+            entries.add(new Entry(HipAnalyzerEvent.HipTaggedEvent.name(), new HipAnalyzerEvent.HipTaggedEventDecoder()));
+            entries.add(new Entry(HipAnalyzerEvent.HipWaveState.name(), new HipAnalyzerEvent.HipWaveStateDecoder()));
+
+            // Looked up for every events header, seldom modified
+            decoders = new CopyOnWriteArrayList<>(entries);
+            sDecoders = decoders;
+        }
+        return decoders;
+    }
+
+    private static List<Entry> readExtensions() {
+        List<Entry> entries = new ArrayList<>();
+
+        // No registry when running outside of the platform
+        IExtensionRegistry registry = Platform.getExtensionRegistry();
+        if (registry == null) {
+            return entries;
+        }
+
+        for (IConfigurationElement element : registry.getConfigurationElementsFor(EXTENSION_POINT_ID)) {
+            if (!DECODER_ELEM.equals(element.getName())) {
+                continue;
+            }
+
+            String eventName = element.getAttribute(EVENT_NAME_ATTR);
+            try {
+                Object decoder = element.createExecutableExtension(CLASS_ATTR);
+                if (eventName != null && decoder instanceof IHipEventDecoder) {
+                    entries.add(new Entry(eventName, (IHipEventDecoder) decoder));
+                }
+            } catch (CoreException e) {
+                // Invalid contribution, ignored
+            }
+        }
+
+        return entries;
+    }
+}
@@ -1,8 +1,9 @@
 package org.eclipse.tracecompass.incubator.gpu.core.trace;
 
-import java.nio.MappedByteBuffer;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -10,6 +11,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -19,14 +27,18 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.incubator.gpu.analysis.GpuStateSystemAnalysis;
 import org.eclipse.tracecompass.incubator.internal.gpu.core.Activator;
 import org.eclipse.tracecompass.tmf.core.event.*;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
-import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
@@ -37,19 +49,34 @@ import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
  * @author Sébastien Darche <sebastien.darche@polymtl.ca>
  *
  */
-public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
+public class HipTrace extends TmfTrace implements ITmfTraceKnownSize, ITmfTraceCompleteness {
 
     // ----- Trace file location ----- //
 
     private File fFile;
     private FileInputStream stream;
-    private long fSize;
+    private volatile long fSize;
     private FileChannel fFileChannel;
-    private TmfLongLocation fCurrent;
-    private MappedByteBuffer fMappedByteBuffer;
+    private volatile HipTraceMapping fMapping;
+    /**
+     * @brief Rank following the last event that was read, for the progress
+     *        report only. Each context holds its own position
+     */
+    private volatile long fLastRank;
     private long fOffset;
 
-    private TmfEvent fCurrentEvent;
+    // ----- Live mode ----- //
+
+    /**
+     * @brief Offset of the first block which is not indexed yet
+     */
+    private long fNextOffset;
+    private @Nullable CountersHeader fLastCounters;
+    private volatile boolean fComplete = true;
+    private @Nullable ScheduledExecutorService fLiveExecutor;
+    private long fLastGrowth;
+
+    private boolean fTimeOrdered;
 
     // ----- Trace information ----- //
 
@@ -110,9 +137,47 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
     public static final String HIPTRACE_COUNTERS_COUNTER = "hiptrace_counter"; //$NON-NLS-1$
 
     /**
-     * @brief Trace buffered read size
+     * @brief System property limiting the number of threads used to index a
+     *        trace. Defaults to the number of available processors
+     */
+    public static final String INDEXING_PARALLELISM_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.indexing.parallelism"; //$NON-NLS-1$
+
+    /**
+     * @brief System property enabling the time-ordered mode : the events of a
+     *        block are delivered in timestamp order, merged from the
+     *        producers, instead of producer by producer. Defaults to true when
+     *        the state system history is kept on disk, see
+     *        GpuStateSystemAnalysis.isHistoryOnDisk()
+     */
+    public static final String TIME_ORDERED_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.timeOrdered"; //$NON-NLS-1$
+
+    /**
+     * @brief System property enabling the live mode : the trace file is
+     *        watched and the blocks appended by hip::HipTraceManager are
+     *        indexed as they are completed
+     */
+    public static final String LIVE_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.live"; //$NON-NLS-1$
+
+    /**
+     * @brief System property for the polling period of the live mode, in
+     *        milliseconds
+     */
+    public static final String LIVE_PERIOD_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.live.period"; //$NON-NLS-1$
+
+    /**
+     * @brief System property for the delay, in milliseconds, after which a
+     *        live trace that stopped growing is considered complete
+     */
+    public static final String LIVE_TIMEOUT_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.live.timeout"; //$NON-NLS-1$
+
+    private static final long DEFAULT_LIVE_PERIOD = 1000L;
+
+    private static final long DEFAULT_LIVE_TIMEOUT = 60000L;
+
+    /**
+     * @brief Size of an entry of the events offsets table (size_t)
      */
-    private static final int BUFFER_SIZE = 32768;
+    private static final long SIZEOF_OFFSET = 8L;
 
     /**
      * @param geometry
@@ -183,6 +248,43 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         }
     }
 
+    /**
+     * @brief Read-only view over the counters of a dump, decoded in bulk to
+     *        unboxed values
+     */
+    public static class Counters {
+        private final long[] values;
+
+        /**
+         * @param values
+         *            Decoded counters
+         */
+        public Counters(long[] values) {
+            this.values = values;
+        }
+
+        /**
+         * @return Number of counters
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * @param index
+         *            Counter index
+         * @return Value of the counter
+         */
+        public long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        public String toString() {
+            return "<counters>"; //$NON-NLS-1$
+        }
+    }
+
     public static class Event {
         public String type;
         public Object value;
@@ -203,6 +305,14 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         public static class Field {
             public String type;
             public long size;
+            /**
+             * @brief Decoding strategy, resolved from the mangled type
+             */
+            public final ItaniumABIParser.Kind kind;
+            /**
+             * @brief Demangled type name
+             */
+            public final String name;
 
             /**
              * @param type
@@ -213,35 +323,157 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
             public Field(String type, long size) {
                 this.type = type;
                 this.size = size;
+                this.kind = ItaniumABIParser.kindOf(type, size);
+                this.name = ItaniumABIParser.demangleType(type);
             }
         }
 
         private static long SIZEOF_SIZE_T = 8L; // 8 bytes for a size_t
 
+        private static final int PRODUCER_HINT_STEPS = 8;
+
         public final long eventSize;
         public final List<Field> fields;
+        /**
+         * @brief Event type, resolved from the event name and fields
+         */
+        public final HipAnalyzerEvent.EventKind kind;
+        /**
+         * @brief Decoder of the events, resolved from the registry
+         */
+        public final IHipEventDecoder decoder;
+        // Compiled layout of the fields, for decoding without any lookup
+        private final int[] fieldOffsets;
+        private final int[] fieldSizes;
+        private final boolean[] fieldSigned;
         public final long numOffsets;
         public final String eventName;
         public CountersHeader counters;
-        public List<Long> offsets;
+        private volatile long[] offsets;
+        private int producerHint = 0;
+        // Reclaimed under memory pressure, merged again on the next use
+        private volatile SoftReference<int[]> timeOrder = new SoftReference<>(null);
         public final long headerPos;
+        public final String str;
         private long firstStamp = -1; // <=> max unsigned value (two's
                                       // complement)
+        private long numEvents = -1;
+        private HipTraceMapping source;
 
-        public EventsHeader(long headerPos, long eventSize, List<Field> fields, long numOffsets, String eventName) {
+        public EventsHeader(long headerPos, long eventSize, List<Field> fields, long numOffsets, String eventName, String str) {
             this.headerPos = headerPos;
             this.eventSize = eventSize;
             this.numOffsets = numOffsets + 1; // Accounting for the last offset
                                               // which is the end position
             this.fields = fields;
             this.eventName = eventName;
+            this.str = str;
+
+            this.kind = HipAnalyzerEvent.EventKind.of(eventName, fields.size());
+
+            fieldOffsets = new int[fields.size()];
+            fieldSizes = new int[fields.size()];
+            fieldSigned = new boolean[fields.size()];
+            int fieldOffset = 0;
+            for (int i = 0; i < fields.size(); ++i) {
+                Field field = fields.get(i);
+                fieldOffsets[i] = fieldOffset;
+                fieldSizes[i] = (int) field.size;
+                fieldSigned[i] = field.kind == ItaniumABIParser.Kind.SIGNED;
+                fieldOffset += field.size;
+            }
+
+            this.decoder = HipEventDecoderRegistry.getDecoder(this);
+        }
+
+        /**
+         * @param buffer
+         *            Little-endian buffer holding the event
+         * @param index
+         *            Absolute index of the event in the buffer
+         * @param field
+         *            Field index
+         * @return Integral value (or raw bits) of the field
+         */
+        public long readField(ByteBuffer buffer, int index, int field) {
+            return ItaniumABIParser.readValue(fieldSigned[field], fieldSizes[field], buffer, index + fieldOffsets[field]);
+        }
+
+        /**
+         * @param field
+         *            Field index
+         * @return Offset of the field in an event, in bytes
+         */
+        public int fieldOffset(int field) {
+            return fieldOffsets[field];
         }
 
         /**
          * @return Total number of events
          */
         public long numEvents() {
-            return offsets.get(offsets.size() - 1);
+            if (numEvents == -1) {
+                long[] offsetsTable = getOffsets();
+                return (offsetsTable == null) ? 0L : offsetsTable[offsetsTable.length - 1];
+            }
+            return numEvents;
+        }
+
+        /**
+         * @brief Sets the number of events, when it is known without reading
+         *        the whole offsets table (from a persisted index, or the last
+         *        entry of the table). The table is then only read when needed.
+         *
+         * @param numEvents
+         *            Total number of events
+         * @param source
+         *            Trace mapping, from which the offsets table can be read
+         */
+        public void setNumEvents(long numEvents, HipTraceMapping source) {
+            this.numEvents = numEvents;
+            this.source = source;
+        }
+
+        /**
+         * @return Offsets table, parsed from the trace file on first use if
+         *         the header was restored from a persisted index
+         */
+        public long[] getOffsets() {
+            long[] table = offsets;
+            if (table == null && source != null) {
+                synchronized (this) {
+                    if (offsets == null) {
+                        parseOffsets(source);
+                    }
+                    table = offsets;
+                }
+            }
+            return table;
+        }
+
+        /**
+         * @return Index of the events of the block in timestamp order, merged
+         *         from the producers on first use. The index is softly held (4
+         *         bytes per event) and merged again once reclaimed. Null if the
+         *         events are not timestamped or could not be merged
+         */
+        public int[] getTimeOrder() {
+            int[] order = timeOrder.get();
+            if (order == null && source != null && stampOffset() != -1 && numEvents() <= Integer.MAX_VALUE - 8) {
+                synchronized (this) {
+                    long[] offsetsTable = getOffsets();
+                    order = timeOrder.get();
+                    if (order == null && offsetsTable != null) {
+                        try {
+                            order = HipTraceMerge.timeOrder(offsetsTable, source, headerPos + offsetsSize() + stampOffset(), eventSize);
+                            timeOrder = new SoftReference<>(order);
+                        } catch (IOException e) {
+                            // Left in the file order
+                        }
+                    }
+                }
+            }
+            return order;
         }
 
         /**
@@ -262,7 +494,7 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
          * @return Number of event producers
          */
         public long parallelism() {
-            return offsets.size() - 1;
+            return numOffsets - 1;
         }
 
         /**
@@ -279,14 +511,47 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
          *         type of queue)
          */
         public long idOf(long offset) {
-            long varOffset = offset / eventSize;
-            for (int i = 0; i < offsets.size(); ++i) {
-                if (offsets.get(i) > varOffset) {
-                    return (long) i - 1;
+            long[] offsetsTable = getOffsets();
+            if (offsetsTable == null) {
+                return -1;
+            }
+
+            long event = offset / eventSize;
+            int last = offsetsTable.length - 1;
+            if (event < 0 || event >= offsetsTable[last]) {
+                return -1;
+            }
+
+            // Events are mostly decoded in order : resume from the producer of
+            // the previous lookup, skipping a few finished or empty producers,
+            // before falling back to a binary search. The hint is validated on
+            // every use, so racing readers are harmless
+            int hint = producerHint;
+            if (offsetsTable[hint] <= event) {
+                for (int step = 0; step < PRODUCER_HINT_STEPS && offsetsTable[hint + 1] <= event; ++step) {
+                    ++hint;
+                }
+                if (event < offsetsTable[hint + 1]) {
+                    producerHint = hint;
+                    return hint;
                 }
+            }
 
+            // Last producer whose first event is <= event. Empty producers
+            // share their offset with the next one, which is then selected
+            int low = 0;
+            int high = last - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsetsTable[mid] <= event) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
             }
-            return -1;
+
+            producerHint = low;
+            return low;
         }
 
         /**
@@ -300,12 +565,19 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
 
         /**
          * @param offset
-         *            Producer id
+         *            Offset of the event in the events dump
          * @return TmfEventField with the appropriate geometry
          */
         public TmfEventField[] geometryOf(long offset) {
-            long id = idOf(offset);
+            return geometryOfProducer(idOf(offset));
+        }
 
+        /**
+         * @param id
+         *            Global thread id or wave id
+         * @return TmfEventField with the appropriate geometry
+         */
+        public TmfEventField[] geometryOfProducer(long id) {
             KernelConfiguration.Geometry geometry = counters.configuration.geometry;
 
             if (isThread()) {
@@ -336,45 +608,67 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
             return geom;
         }
 
-        public void parseOffsets(File f) {
-            offsets = new ArrayList<>();
-            try (FileInputStream stream = new FileInputStream(f);) {
-
-                FileChannel fileChannel = stream.getChannel();
-
-                MappedByteBuffer mappedByteBuffer = fileChannel.map(MapMode.READ_ONLY, headerPos, numOffsets * SIZEOF_SIZE_T);
-
-                for (long i = 0L; i < numOffsets; ++i) {
-                    long offset = 0;
-                    for (int b = 0; b < SIZEOF_SIZE_T; ++b) {
-                        int unsignedValue = mappedByteBuffer.get() & 0xFF;
-                        offset += unsignedValue << (b * 8);
-                    }
-
-                    offsets.add(offset);
-                }
+        /**
+         * @brief Reads the offsets table (first event of each producer) into a
+         *        primitive array
+         *
+         * @param mapping
+         *            Mapping of the trace file
+         */
+        public void parseOffsets(HipTraceMapping mapping) {
+            if (numOffsets > Integer.MAX_VALUE - 8 || headerPos + offsetsSize() > mapping.size()) {
+                return;
+            }
 
+            long[] table = new long[(int) numOffsets];
+            try {
+                mapping.getLongs(headerPos, table, 0, table.length);
             } catch (IOException e) {
-
+                return;
             }
+
+            offsets = table;
+        }
+
+        public boolean hasStamp() {
+            return firstStamp != -1;
         }
 
         /**
          * @brief The first s_memrealtime stamp of the kernel execution is
-         *        unknown. We then try and find the earliest one to compute the
-         *        rest of them
+         *        unknown, the earliest one of the block is used as the origin
+         *        of the timestamps. It is set once, before the block is
+         *        published in the index
+         *
          * @param stamp
-         *            Timestamp from
+         *            Earliest s_memrealtime stamp of the events, as computed
+         *            when indexing the trace
          */
-        public void registerStamp(long stamp) {
-            if (Long.compareUnsigned(stamp, firstStamp) < 0) {
-                // stamp lower than firstStamp
-                firstStamp = stamp;
-            }
+        public void setFirstStamp(long stamp) {
+            firstStamp = stamp;
         }
 
-        public boolean hasStamp() {
-            return firstStamp != -1;
+        /**
+         * @return Offset of the s_memrealtime stamp in an event, in bytes, or
+         *         -1 if the events are not timestamped
+         */
+        public long stampOffset() {
+            int stampField;
+            switch (kind) {
+            case TAGGED_EVENT:
+                stampField = 1;
+                break;
+            case WAVE_STATE:
+                stampField = 0;
+                break;
+            default:
+                return -1;
+            }
+
+            if (fieldSizes[stampField] != SIZEOF_SIZE_T) {
+                return -1;
+            }
+            return fieldOffsets[stampField];
         }
 
         /**
@@ -395,39 +689,43 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         }
     }
 
-    private static class TraceLocation {
-        public long offset;
-        public Object header;
+    /**
+     * @param f
+     *            Trace file
+     * @return First line of the file, read with a single call, or null if it
+     *         could not be found
+     */
+    private static @Nullable String getFirstLine(File f) {
+        try (FileInputStream iStream = new FileInputStream(f);) {
+            FileChannel channel = iStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), HipTraceMapping.MAX_RECORD_SIZE));
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
 
-        public TraceLocation(long offset, Object header) {
-            this.offset = offset;
-            this.header = header;
-        }
-    }
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Fill the buffer
+            }
 
-    private static String getLine(FileInputStream stream) throws IOException {
-        List<Byte> bytes = new ArrayList<>();
-        int read = stream.read();
-        while (read != '\n') {
-            bytes.add((byte) read);
-            read = stream.read();
-        }
+            int end = HipTraceMapping.indexOfNewline(buffer, 0, buffer.position());
+            if (end == -1) {
+                return null;
+            }
 
-        byte[] unboxed = new byte[bytes.size()];
-        for (int i = 0; i < bytes.size(); ++i) {
-            unboxed[i] = bytes.get(i);
+            return new String(buffer.array(), 0, end, StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return null;
         }
-
-        return new String(unboxed, StandardCharsets.US_ASCII);
     }
 
     /**
-     * @brief The offset map is filled when initializing the trace, by reading
-     *        every header and storing the offset of each new event. The key is
-     *        the rank of the event, and the value represents an offset in the
-     *        file and a header corresponding to the event
+     * @brief The index is filled when initializing the trace, by reading every
+     *        header and storing one entry per block. The rank of an event is
+     *        resolved to an offset in the file and the header corresponding to
+     *        the event. In live mode, it is replaced by an extended copy when
+     *        new blocks are indexed
      */
-    private List<TraceLocation> offsetsMap;
+    private volatile HipTraceIndex fIndex;
+
+    private final HipWaveStateCache fWaveStates = new HipWaveStateCache();
 
     /**
      * @brief Unary constructor
@@ -474,6 +772,8 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         super.initTrace(resource, path, type);
         fFile = new File(path);
         fSize = fFile.length();
+        String timeOrdered = System.getProperty(TIME_ORDERED_PROPERTY);
+        fTimeOrdered = timeOrdered != null ? Boolean.parseBoolean(timeOrdered) : GpuStateSystemAnalysis.isHistoryOnDisk();
 
         if (!parseFileHeader(fFile)) {
             throw new TmfTraceException("Invalid trace header"); //$NON-NLS-1$
@@ -485,6 +785,7 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         try {
             stream = new FileInputStream(fFile);
             fFileChannel = stream.getChannel();
+            fMapping = new HipTraceMapping(fFileChannel, fSize);
         } catch (IOException e) {
             throw new TmfTraceException("Could not create reading channel"); //$NON-NLS-1$
         }
@@ -493,79 +794,192 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
             throw new TmfTraceException("Could not read trace events offsets"); //$NON-NLS-1$
         }
 
-        fCurrent = new TmfLongLocation(0L);
+        fLastRank = 0L;
+
+        if (managed && Boolean.getBoolean(LIVE_PROPERTY)) {
+            startLive();
+        }
     }
 
-    @Override
-    public synchronized ITmfEvent getNext(ITmfContext context) {
-        TmfEvent event = null;
-        long rank = context.getRank();
+    // ----- Live mode ----- //
 
-        // Read header
-        if (rank < offsetsMap.size()) {
-            TraceLocation loc = offsetsMap.get((int) rank);
-            long offset = loc.offset;
+    private void startLive() {
+        fComplete = false;
+        fLastGrowth = System.currentTimeMillis();
 
-            Object parsedHeader = loc.header;
+        long period = Long.getLong(LIVE_PERIOD_PROPERTY, DEFAULT_LIVE_PERIOD);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HipTrace live " + fFile.getName()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::pollTrace, period, period, TimeUnit.MILLISECONDS);
+        fLiveExecutor = executor;
+    }
 
-            if (parsedHeader instanceof CountersHeader) {
-                CountersHeader countersHeader = (CountersHeader) parsedHeader;
-                long dataOffset = offset + countersHeader.str.length() + 1;
-                event = parseCountersEvent(countersHeader, dataOffset, rank);
-            } else if (parsedHeader instanceof EventsHeader) {
-                EventsHeader eventsHeader = (EventsHeader) parsedHeader;
-                event = parseEventsEvent(eventsHeader, offset, rank);
-            } else {
-                // What to do ?
+    /**
+     * @brief Indexes the blocks completed since the last poll, and notifies
+     *        the analyses of the new range
+     */
+    private void pollTrace() {
+        long size = fFile.length();
+        long now = System.currentTimeMillis();
+
+        if (size > fSize) {
+            fLastGrowth = now;
+
+            // The segments of the previous mapping stay valid for the events
+            // that are being read
+            fMapping = new HipTraceMapping(fFileChannel, size);
+            fSize = size;
+
+            long nbEvents = fIndex.size();
+            if (!indexNewBlocks(size)) {
+                // Corrupted block, nothing more can be read
+                setComplete(true);
+                return;
+            }
+
+            if (fIndex.size() > nbEvents) {
+                getIndexer().buildIndex(nbEvents, TmfTimeRange.ETERNITY, true);
+                broadcast(new TmfTraceRangeUpdatedSignal(this, this, getTimeRange()));
             }
+        } else if (now - fLastGrowth > Long.getLong(LIVE_TIMEOUT_PROPERTY, DEFAULT_LIVE_TIMEOUT)) {
+            setComplete(true);
+        }
+    }
+
+    /**
+     * @return True if the events of a block are delivered in timestamp order,
+     *         see TIME_ORDERED_PROPERTY
+     */
+    public boolean isTimeOrdered() {
+        return fTimeOrdered;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return fComplete;
+    }
+
+    @Override
+    public void setComplete(boolean isComplete) {
+        if (!isComplete || fComplete) {
+            return;
         }
 
+        fComplete = true;
+
+        ScheduledExecutorService executor = fLiveExecutor;
+        if (executor != null) {
+            executor.shutdown();
+            fLiveExecutor = null;
+        }
+
+        // The file is not expected to change anymore, the index can be kept
+        HipTraceIndexFile.write(getIndexFile(), fFile, indexRecords());
+        broadcast(new TmfTraceRangeUpdatedSignal(this, this, getTimeRange()));
+    }
+
+    /**
+     * @brief Reads the event at the rank of the context. The trace holds no
+     *        read position : the events are decoded from absolute positions in
+     *        the mapping, and concurrent contexts do not need to be serialized
+     */
+    @Override
+    public ITmfEvent getNext(ITmfContext context) {
+        long rank = context.getRank();
+
+        HipTraceIndex index = fIndex;
+        int block = (context instanceof HipTraceContext) ? ((HipTraceContext) context).block(index) : index.blockOf(rank);
+        ITmfEvent event = readEvent(index, block, rank);
+
         if (event != null) {
             updateAttributes(context, event);
-            context.setLocation(getCurrentLocation());
+
+            // The location is the rank of the next event to read
+            context.setLocation(new TmfLongLocation(rank + 1));
             context.increaseRank();
-            fCurrentEvent = event;
+            fLastRank = rank + 1;
         }
 
         return event;
     }
 
-    private TmfEvent parseCountersEvent(CountersHeader header, long offset, long rank) {
-        try {
-            seek(offset);
-        } catch (IOException e) {
+    /**
+     * @param index
+     *            Index of the trace
+     * @param block
+     *            Block of the index holding the event, -1 if none
+     * @param rank
+     *            Rank of the event
+     * @return Decoded event, null if it could not be read
+     */
+    private @Nullable ITmfEvent readEvent(HipTraceIndex index, int block, long rank) {
+        if (block == -1) {
             return null;
         }
 
-        final KernelConfiguration configuration = header.configuration;
-        List<Long> counters = new ArrayList<Long>((int) header.numCounters) {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String toString() {
-                return "<counters>"; //$NON-NLS-1$
-            }
-        };
-
-        for (long pos = offset; pos < header.totalSize(); pos += header.sizeofCounter) {
-            try {
-                if (currentOffset() + header.sizeofCounter > bufferEnd()) {
-                    reallocBuffer(pos);
+        long event = rank - index.firstRank(block);
+        Object parsedHeader = index.headerOf(block);
+
+        if (parsedHeader instanceof CountersHeader) {
+            CountersHeader countersHeader = (CountersHeader) parsedHeader;
+            long dataOffset = index.baseOffset(block) + countersHeader.str.length() + 1;
+            return parseCountersEvent(countersHeader, dataOffset, rank);
+        } else if (parsedHeader instanceof EventsHeader) {
+            EventsHeader eventsHeader = (EventsHeader) parsedHeader;
+            if (fTimeOrdered) {
+                // The rank is the position in time, not in the file
+                int[] order = eventsHeader.getTimeOrder();
+                if (order != null) {
+                    event = order[(int) event];
                 }
-            } catch (IOException e) {
-                return null;
             }
+            long offset = index.baseOffset(block) + event * index.eventSize(block);
+            return parseEventsEvent(eventsHeader, offset, rank);
+        }
 
-            long counter = 0;
-            for (int i = 0; i < header.sizeofCounter; ++i) {
-                byte b = fMappedByteBuffer.get();
-                counter += b << (i * 8);
-            }
+        return null;
+    }
 
-            counters.add(counter);
+    private TmfEvent parseCountersEvent(CountersHeader header, long offset, long rank) {
+        final KernelConfiguration configuration = header.configuration;
+
+        if (header.numCounters < 0 || header.numCounters > Integer.MAX_VALUE - 8 || offset + header.totalSize() > fSize) {
+            return null;
+        }
+
+        long[] values = new long[(int) header.numCounters];
+        HipTraceMapping mapping = fMapping;
 
+        try {
+            switch ((int) header.sizeofCounter) {
+            case Long.BYTES:
+                mapping.getLongs(offset, values, 0, values.length);
+                break;
+            case Integer.BYTES:
+                mapping.getUnsignedInts(offset, values, 0, values.length);
+                break;
+            default:
+                // Unusual counter size, assemble the unsigned values byte per
+                // byte
+                long pos = offset;
+                for (int c = 0; c < values.length; ++c) {
+                    long counter = 0;
+                    for (int i = 0; i < header.sizeofCounter; ++i, ++pos) {
+                        counter |= (mapping.get(pos) & 0xFFL) << (i * 8);
+                    }
+                    values[c] = counter;
+                }
+                break;
+            }
+        } catch (IOException e) {
+            return null;
         }
 
+        Counters counters = new Counters(values);
+
         final TmfEventField[] countersFields = {
                 new TmfEventField("configuration", configuration, null), //$NON-NLS-1$
                 new TmfEventField("counters", counters, null), //$NON-NLS-1$
@@ -576,63 +990,45 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
         return new TmfEvent(this, rank, TmfTimestamp.fromNanos(header.roctracerEnd), new TmfEventType(HIPTRACE_COUNTERS_NAME, root), root);
     }
 
-    private TmfEvent parseEventsEvent(EventsHeader header, long offset, long rank) {
+    private @Nullable ITmfEvent parseEventsEvent(EventsHeader header, long offset, long rank) {
+        if (header.eventSize > HipTraceMapping.MAX_RECORD_SIZE) {
+            return null;
+        }
+
+        // The event is decoded in place from the mapped segment, each field
+        // being read on demand by its absolute index
+        HipTraceMapping mapping = fMapping;
+        ByteBuffer buffer;
         try {
-            seek(offset);
+            buffer = mapping.buffer(offset);
         } catch (IOException e) {
             return null;
         }
-        List<Event> data = new ArrayList<>();
-
-        long pos = offset;
-
-        boolean empty = true;
-
-        for (EventsHeader.Field f : header.fields) {
-            try {
-                if (currentOffset() + f.size > bufferEnd()) {
-                    reallocBuffer(pos);
-                }
-            } catch (IOException e) {
-                return null;
-            }
-
-            ArrayList<Byte> bytes = new ArrayList<>();
-
-            for (int index = 0; index < f.size; ++index) {
-                Byte b = fMappedByteBuffer.get();
-                bytes.add(b);
-                if (b.byteValue() != 0) {
-                    empty = false;
-                }
-            }
-
-            // Attempt to convert to the appropriate type
-            Object value = ItaniumABIParser.deserializeVariable(f.type, f.size, bytes);
-
-            data.add(new Event(ItaniumABIParser.demangleType(f.type), value));
-
-            pos += f.size;
 
+        int index = mapping.index(offset);
+        if (index + header.eventSize > buffer.limit()) {
+            return null;
         }
 
         long eventOffset = offset - header.headerPos - header.offsetsSize();
 
-        /*if (empty) {
-            return null;
-        }*/
-        return (TmfEvent) HipAnalyzerEvent.parse(this, rank, eventOffset, header, data);
+        return HipAnalyzerEvent.parse(this, rank, eventOffset, header, buffer, index);
     }
 
     @Override
     public ITmfLocation getCurrentLocation() {
-        return fCurrent;
+        return new TmfLongLocation(fLastRank);
     }
 
     @Override
     public double getLocationRatio(ITmfLocation location) {
+        long size = fIndex.size();
+        if (size == 0) {
+            return 0.0;
+        }
+
         TmfLongLocation loc = (TmfLongLocation) location;
-        return loc.getLocationInfo().doubleValue() / offsetsMap.size();
+        return loc.getLocationInfo().doubleValue() / size;
     }
 
     @Override
@@ -642,47 +1038,80 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
             newLoc = new TmfLongLocation(0L);
         }
 
-        try {
-            seek(newLoc.getLocationInfo());
-        } catch (IOException e) {
-        }
-
-        fCurrent = newLoc;
-
-        return new TmfContext(newLoc, newLoc.getLocationInfo());
+        return new HipTraceContext(newLoc, newLoc.getLocationInfo());
     }
 
     @Override
     public ITmfContext seekEvent(double ratio) {
-        TmfLongLocation loc = new TmfLongLocation((long) ratio * offsetsMap.size());
+        long size = fIndex.size();
+        long rank = (long) (ratio * size);
+        TmfLongLocation loc = new TmfLongLocation(Math.max(0L, Math.min(rank, size)));
 
         return seekEvent(loc);
     }
 
+    /**
+     * @brief The location of an event is its rank, which the index resolves
+     *        to a block with a binary search. Any event is then a checkpoint
+     *        and no event has to be read to reach it
+     */
+    @Override
+    public ITmfContext seekEvent(long rank) {
+        return seekEvent(new TmfLongLocation(Math.max(0L, rank)));
+    }
+
+    /**
+     * @return Number of events in the trace
+     */
     @Override
     public int size() {
-        return (int) fSize;
+        return (int) Math.min(fIndex.size(), Integer.MAX_VALUE);
     }
 
     @Override
     public int progress() {
-        return fCurrent.getLocationInfo().intValue();
+        return (int) Math.min(fLastRank, Integer.MAX_VALUE);
     }
 
     @Override
     public ITmfEvent parseEvent(ITmfContext context) {
-        return fCurrentEvent;
+        long rank = context.getRank();
+        HipTraceIndex index = fIndex;
+
+        return readEvent(index, index.blockOf(rank), rank);
+    }
+
+    /**
+     * @return Headers of the hip::WaveState blocks (one per kernel launch),
+     *         in file order
+     */
+    public List<EventsHeader> getWaveStateHeaders() {
+        HipTraceIndex index = fIndex;
+        List<EventsHeader> headers = new ArrayList<>();
+
+        for (int block = 0; block < index.numBlocks(); ++block) {
+            Object parsedHeader = index.headerOf(block);
+            if (parsedHeader instanceof EventsHeader && ((EventsHeader) parsedHeader).kind == HipAnalyzerEvent.EventKind.WAVE_STATE) {
+                headers.add((EventsHeader) parsedHeader);
+            }
+        }
+
+        return headers;
+    }
+
+    /**
+     * @param header
+     *            Header of a hip::WaveState block of this trace
+     * @return Decoded records of the block, from the cache
+     */
+    public @Nullable HipWaveStateColumns getWaveStateColumns(EventsHeader header) {
+        return fWaveStates.get(header, fMapping);
     }
 
     // ----- GPU Counters specific methods ----- //
 
     private boolean parseFileHeader(File f) {
-        String header = new String();
-        try (FileInputStream iStream = new FileInputStream(f);) {
-            header = getLine(iStream);
-        } catch (IOException e) {
-            return false;
-        }
+        String header = getFirstLine(f);
 
         if (header == null) {
             return false;
@@ -790,7 +1219,7 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
             return null;
         }
 
-        return new EventsHeader(offset + header.length() + 1, eventSize, fields, totalSize, eventName);
+        return new EventsHeader(offset + header.length() + 1, eventSize, fields, totalSize, eventName, header);
     }
 
     private @Nullable Object readHeader(String header, long offset) {
@@ -807,125 +1236,285 @@ public class HipTrace extends TmfTrace implements ITmfTraceKnownSize {
     }
 
     private boolean initMap() {
-        // The offsets of each events (counters or traces) are stored in a
-        // hashmap
-        offsetsMap = new ArrayList<>();
-        CountersHeader lastCounters = null;
+        // The offsets of each block (counters or traces) are stored in the
+        // index
+        fIndex = new HipTraceIndex();
 
         if (!managed) {
-            String header = new String();
-            try (FileInputStream iStream = new FileInputStream(fFile);) {
-                header = getLine(iStream);
+            String header;
+            try {
+                header = fMapping.getLine(0L);
             } catch (IOException e) {
                 return false;
             }
 
-            CountersHeader parsedHeader = parseCountersHeader(header);
+            CountersHeader parsedHeader = (header == null) ? null : parseCountersHeader(header);
             if (parsedHeader == null) {
                 return false;
             }
 
-            offsetsMap.add(new TraceLocation(0L, parsedHeader));
+            fIndex.addBlock(0L, 0L, 1L, parsedHeader);
 
-        } else {
-            long offset = fOffset;
-
-            do {
-                // Need to read multiple headers
-                String header = new String();
-                try (FileInputStream iStream = new FileInputStream(fFile);) {
-                    iStream.skip(offset);
-                    header = getLine(iStream);
-                } catch (IOException e) {
-                    return false;
-                }
+        } else if (Boolean.getBoolean(LIVE_PROPERTY) || !loadIndex()) {
+            fNextOffset = fOffset;
+            if (!indexNewBlocks(fSize)) {
+                return false;
+            }
 
-                if (header == null) {
-                    return false;
-                }
+            // A live trace is still being written, its index would be
+            // outdated right away
+            if (!Boolean.getBoolean(LIVE_PROPERTY)) {
+                HipTraceIndexFile.write(getIndexFile(), fFile, indexRecords());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @brief Indexes the complete blocks found between the end of the
+     *        indexed blocks and the given file size. A trailing block which
+     *        is partially written is left for a later call
+     *
+     * @param end
+     *            Current size of the file
+     * @return False if a block could not be parsed
+     */
+    private boolean indexNewBlocks(long end) {
+        HipTraceIndex index = fIndex.copy();
+        HipTraceMapping mapping = fMapping;
+        CountersHeader lastCounters = fLastCounters;
+        long offset = fNextOffset;
+
+        // Phase one : chain the headers. Only the last entry of each offsets
+        // table (the number of events) is needed to find the next block
+        List<EventsHeader> eventsHeaders = new ArrayList<>();
+
+        while (offset < end) {
+            // Need to read multiple headers, straight from the mapping
+            String header;
+            try {
+                header = mapping.getLine(offset);
+            } catch (IOException e) {
+                return false;
+            }
+
+            if (header == null) {
+                // The header line is not complete yet
+                break;
+            }
 
-                Object parsedHeader = readHeader(header, offset);
+            Object parsedHeader = readHeader(header, offset);
 
-                if (parsedHeader == null) {
-                    return false;
+            if (parsedHeader == null) {
+                return false;
+            }
+
+            long nextOffset;
+
+            if (parsedHeader instanceof CountersHeader) {
+                CountersHeader countersHeader = (CountersHeader) parsedHeader;
+                nextOffset = offset + countersHeader.totalSize() + header.length() + 1;
+                if (nextOffset > end) {
+                    break;
                 }
 
-                long nextOffset;
+                index.addBlock(offset, 0L, 1L, parsedHeader);
+                lastCounters = countersHeader;
 
-                if (parsedHeader instanceof CountersHeader) {
-                    CountersHeader countersHeader = (CountersHeader) parsedHeader;
-                    nextOffset = offset + countersHeader.totalSize() + header.length() + 1;
+            } else if (parsedHeader instanceof EventsHeader) {
+                EventsHeader eventsHeader = (EventsHeader) parsedHeader;
+                eventsHeader.counters = lastCounters;
 
-                    offsetsMap.add(new TraceLocation(offset, parsedHeader));
-                    lastCounters = countersHeader;
+                long eventsOffset = eventsHeader.headerPos + eventsHeader.offsetsSize();
+                if (eventsOffset > end) {
+                    break;
+                }
 
-                } else if (parsedHeader instanceof EventsHeader) {
-                    EventsHeader eventsHeader = (EventsHeader) parsedHeader;
-                    eventsHeader.counters = lastCounters;
+                long numEvents;
+                try {
+                    numEvents = mapping.getLong(eventsOffset - SIZEOF_OFFSET);
+                } catch (IOException e) {
+                    return false;
+                }
+
+                nextOffset = eventsOffset + numEvents * eventsHeader.eventSize;
+                if (numEvents < 0 || nextOffset > end) {
+                    break;
+                }
 
-                    offset += header.length() + 1;
+                eventsHeader.setNumEvents(numEvents, mapping);
 
-                    // Now read the offsets
+                // All events have the same header (event type) and size,
+                // a single entry is created for the whole block
+                index.addBlock(eventsOffset, eventsHeader.eventSize, numEvents, parsedHeader);
+                eventsHeaders.add(eventsHeader);
 
-                    eventsHeader.parseOffsets(fFile);
+            } else {
+                return false;
+            }
 
-                    offset += eventsHeader.offsetsSize();
+            offset = nextOffset;
+        }
 
-                    nextOffset = offset + eventsHeader.eventsSize();
+        // Phase two : the blocks are independent, read their offsets tables
+        // and compute their earliest timestamps in parallel
+        if (!indexBlocks(eventsHeaders)) {
+            return false;
+        }
 
-                    // All events have the same header (event type), but a new
-                    // entry is created for each (since a new TmfEvent will be
-                    // created for each entry)
+        fNextOffset = offset;
+        fLastCounters = lastCounters;
+        fIndex = index;
 
-                    long numEvents = eventsHeader.numEvents();
+        return true;
+    }
 
-                    for (int j = 0; j < numEvents; ++j) {
-                        offsetsMap.add(new TraceLocation(offset + j * eventsHeader.eventSize, parsedHeader));
-                    }
+    /**
+     * @brief Parses the offsets table and finds the earliest s_memrealtime
+     *        stamp of each events block, on a dedicated ForkJoinPool
+     *
+     * @param eventsHeaders
+     *            Headers of the events blocks
+     * @return True if every block was indexed
+     */
+    private boolean indexBlocks(List<EventsHeader> eventsHeaders) {
+        int parallelism = Math.max(1, Math.min(eventsHeaders.size(), Integer.getInteger(INDEXING_PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors())));
+
+        List<Callable<Void>> tasks = new ArrayList<>(eventsHeaders.size());
+        for (EventsHeader eventsHeader : eventsHeaders) {
+            tasks.add(() -> {
+                eventsHeader.getOffsets();
+                eventsHeader.setFirstStamp(findFirstStamp(eventsHeader, eventsHeader.headerPos + eventsHeader.offsetsSize()));
+                return null;
+            });
+        }
 
-                } else {
-                    return false;
+        if (parallelism == 1) {
+            try {
+                for (Callable<Void> task : tasks) {
+                    task.call();
                 }
+            } catch (Exception e) {
+                return false;
+            }
+            return true;
+        }
 
-                offset = nextOffset;
-
-            } while (offset < fSize);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        } finally {
+            pool.shutdown();
         }
         return true;
     }
 
     /**
-     * @brief Loads the file buffer at the given position
-     *
-     * @param position
-     *            expected offset of the mapped file buffer
-     * @throws IOException
-     */
-    private void seek(long position) throws IOException {
-        if (position >= fOffset && position < bufferEnd()) {
-            int positionInBuffer = (int) (position - fOffset);
-            fMappedByteBuffer.position(positionInBuffer);
-        } else {
-            reallocBuffer(position);
+     * @return Records of the blocks of the index, to be persisted
+     */
+    private List<HipTraceIndexFile.Record> indexRecords() {
+        HipTraceIndex index = fIndex;
+        List<HipTraceIndexFile.Record> records = new ArrayList<>(index.numBlocks());
+
+        for (int block = 0; block < index.numBlocks(); ++block) {
+            Object parsedHeader = index.headerOf(block);
+            long baseOffset = index.baseOffset(block);
+
+            if (parsedHeader instanceof CountersHeader) {
+                CountersHeader countersHeader = (CountersHeader) parsedHeader;
+                records.add(new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_COUNTERS, baseOffset, countersHeader.str, baseOffset, 0L, 1L, -1L));
+            } else if (parsedHeader instanceof EventsHeader) {
+                EventsHeader eventsHeader = (EventsHeader) parsedHeader;
+                long headerOffset = eventsHeader.headerPos - eventsHeader.str.length() - 1;
+                records.add(new HipTraceIndexFile.Record(HipTraceIndexFile.KIND_EVENTS, headerOffset, eventsHeader.str, baseOffset, eventsHeader.eventSize, index.numEvents(block), eventsHeader.getFirstStamp()));
+            }
         }
+
+        return records;
     }
 
-    private void reallocBuffer(long position) throws IOException {
-        int size = Math.min((int) (fFileChannel.size() - position), BUFFER_SIZE);
-        fMappedByteBuffer = fFileChannel.map(MapMode.READ_ONLY, position, size);
-        fOffset = position;
+    /**
+     * @return Location of the persisted index, in the supplementary files
+     */
+    private File getIndexFile() {
+        return new File(TmfTraceManager.getSupplementaryFileDir(this) + HipTraceIndexFile.INDEX_FILE_NAME);
     }
 
-    private long currentOffset() {
-        return fOffset + fMappedByteBuffer.position();
+    /**
+     * @brief Restores the index from the supplementary files, if it is up to
+     *        date with the trace file
+     *
+     * @return True if the index was loaded
+     */
+    private boolean loadIndex() {
+        List<HipTraceIndexFile.Record> records = HipTraceIndexFile.read(getIndexFile(), fFile);
+        if (records == null || records.isEmpty()) {
+            return false;
+        }
+
+        HipTraceIndex index = new HipTraceIndex();
+        CountersHeader lastCounters = null;
+
+        for (HipTraceIndexFile.Record record : records) {
+            Object parsedHeader = readHeader(record.header, record.headerOffset);
+
+            if (record.kind == HipTraceIndexFile.KIND_COUNTERS && parsedHeader instanceof CountersHeader) {
+                lastCounters = (CountersHeader) parsedHeader;
+            } else if (record.kind == HipTraceIndexFile.KIND_EVENTS && parsedHeader instanceof EventsHeader) {
+                EventsHeader eventsHeader = (EventsHeader) parsedHeader;
+                eventsHeader.counters = lastCounters;
+                eventsHeader.setNumEvents(record.numEvents, fMapping);
+                eventsHeader.setFirstStamp(record.firstStamp);
+            } else {
+                return false;
+            }
+
+            index.addBlock(record.baseOffset, record.eventSize, record.numEvents, parsedHeader);
+        }
+
+        fIndex = index;
+        return true;
     }
 
-    private long bufferEnd() {
-        return fOffset + fMappedByteBuffer.limit();
+    /**
+     * @param header
+     *            Events header
+     * @param eventsOffset
+     *            Offset of the first event in the file
+     * @return Earliest s_memrealtime stamp of the block, or -1 if none
+     */
+    private long findFirstStamp(EventsHeader header, long eventsOffset) {
+        long stampOffset = header.stampOffset();
+        long numEvents = header.numEvents();
+
+        if (stampOffset == -1 || numEvents == 0 || header.eventSize <= 0) {
+            return -1;
+        }
+
+        try {
+            return fMapping.minUnsignedLong(eventsOffset + stampOffset, header.eventSize, numEvents);
+        } catch (IOException e) {
+            return -1;
+        }
     }
 
     @Override
     public synchronized void dispose() {
+        ScheduledExecutorService executor = fLiveExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+            fLiveExecutor = null;
+        }
+
+        fWaveStates.clear();
+
         if (stream != null) {
             try {
                 stream.close();
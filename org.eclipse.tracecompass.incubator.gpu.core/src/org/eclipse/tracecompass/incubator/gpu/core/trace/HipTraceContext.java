@@ -0,0 +1,60 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
+
+/**
+ * @brief Read cursor over a HipTrace. The events are read by absolute
+ *        position from the shared mapping, so the whole state of a reader is
+ *        its rank and the block of the index it is in. Each context keeps its
+ *        own block, which spares the index lookup while reading a block
+ *        sequentially, and lets several contexts read the same trace in
+ *        parallel without any lock.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceContext extends TmfContext {
+
+    private @Nullable HipTraceIndex fIndex = null;
+    private int fBlock = -1;
+    private long fFirstRank = 0L;
+    private long fEndRank = 0L;
+
+    /**
+     * @param location
+     *            Location of the next event (its rank)
+     * @param rank
+     *            Rank of the next event
+     */
+    public HipTraceContext(ITmfLocation location, long rank) {
+        super(location, rank);
+    }
+
+    /**
+     * @param index
+     *            Current index of the trace
+     * @return Block holding the event at the rank of the context, -1 if there
+     *         is none
+     */
+    public int block(HipTraceIndex index) {
+        long rank = getRank();
+
+        // The index is replaced (not modified) when a live trace grows, the
+        // cached block is only valid for the index it was resolved from
+        if (index != fIndex || rank < fFirstRank || rank >= fEndRank) {
+            fIndex = index;
+            fBlock = index.blockOf(rank);
+            if (fBlock == -1) {
+                fFirstRank = 0L;
+                fEndRank = 0L;
+            } else {
+                fFirstRank = index.firstRank(fBlock);
+                fEndRank = fFirstRank + index.numEvents(fBlock);
+            }
+        }
+
+        return fBlock;
+    }
+}
@@ -0,0 +1,193 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.util.Arrays;
+
+/**
+ * @brief Run-length index of the events of a HipTrace. Instead of storing one
+ *        location per event, a single entry is kept per block (counters dump
+ *        or hiptrace_events), as all the events of a block share the same
+ *        header and size. The rank of an event is then resolved with a binary
+ *        search on the cumulative ranks of the blocks.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * @brief Offset in the file of the first event of each block
+     */
+    private long[] fBaseOffsets;
+
+    /**
+     * @brief Size of each event of the block, in bytes
+     */
+    private long[] fEventSizes;
+
+    /**
+     * @brief Rank of the first event of each block. The last entry (at
+     *        fNumBlocks) holds the total number of events
+     */
+    private long[] fFirstRanks;
+
+    /**
+     * @brief Parsed header (CountersHeader or EventsHeader) of each block
+     */
+    private Object[] fHeaders;
+
+    private int fNumBlocks = 0;
+
+    /**
+     * @brief Constructor
+     */
+    public HipTraceIndex() {
+        fBaseOffsets = new long[INITIAL_CAPACITY];
+        fEventSizes = new long[INITIAL_CAPACITY];
+        fFirstRanks = new long[INITIAL_CAPACITY + 1];
+        fHeaders = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return A copy of the index, which can be extended without affecting
+     *         the readers of this one
+     */
+    public HipTraceIndex copy() {
+        HipTraceIndex index = new HipTraceIndex();
+        index.fBaseOffsets = Arrays.copyOf(fBaseOffsets, fBaseOffsets.length);
+        index.fEventSizes = Arrays.copyOf(fEventSizes, fEventSizes.length);
+        index.fFirstRanks = Arrays.copyOf(fFirstRanks, fFirstRanks.length);
+        index.fHeaders = Arrays.copyOf(fHeaders, fHeaders.length);
+        index.fNumBlocks = fNumBlocks;
+        return index;
+    }
+
+    /**
+     * @brief Appends a block at the end of the index
+     *
+     * @param baseOffset
+     *            Offset of the first event of the block in the file
+     * @param eventSize
+     *            Size of a single event, in bytes
+     * @param numEvents
+     *            Number of events in the block
+     * @param header
+     *            Header shared by all the events of the block
+     */
+    public void addBlock(long baseOffset, long eventSize, long numEvents, Object header) {
+        if (fNumBlocks == fBaseOffsets.length) {
+            int capacity = fBaseOffsets.length * 2;
+            fBaseOffsets = Arrays.copyOf(fBaseOffsets, capacity);
+            fEventSizes = Arrays.copyOf(fEventSizes, capacity);
+            fFirstRanks = Arrays.copyOf(fFirstRanks, capacity + 1);
+            fHeaders = Arrays.copyOf(fHeaders, capacity);
+        }
+
+        fBaseOffsets[fNumBlocks] = baseOffset;
+        fEventSizes[fNumBlocks] = eventSize;
+        fHeaders[fNumBlocks] = header;
+        fFirstRanks[fNumBlocks + 1] = fFirstRanks[fNumBlocks] + numEvents;
+
+        ++fNumBlocks;
+    }
+
+    /**
+     * @return Total number of events in the index
+     */
+    public long size() {
+        return fFirstRanks[fNumBlocks];
+    }
+
+    /**
+     * @return Number of blocks in the index
+     */
+    public int numBlocks() {
+        return fNumBlocks;
+    }
+
+    /**
+     * @param rank
+     *            Rank of an event, in [0, size())
+     * @return Index of the block containing the event, or -1 if out of bounds
+     */
+    public int blockOf(long rank) {
+        if (rank < 0 || rank >= size()) {
+            return -1;
+        }
+
+        // Find the last block whose first rank is <= rank. Empty blocks share
+        // their first rank with the next one, which is then selected
+        int low = 0;
+        int high = fNumBlocks - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fFirstRanks[mid] <= rank) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * @param rank
+     *            Rank of an event, in [0, size())
+     * @return Offset of the event in the file, or -1 if out of bounds
+     */
+    public long offsetOf(long rank) {
+        int block = blockOf(rank);
+        if (block == -1) {
+            return -1;
+        }
+
+        return fBaseOffsets[block] + (rank - fFirstRanks[block]) * fEventSizes[block];
+    }
+
+    /**
+     * @param block
+     *            Block index
+     * @return Header of the block
+     */
+    public Object headerOf(int block) {
+        return fHeaders[block];
+    }
+
+    /**
+     * @param block
+     *            Block index
+     * @return Offset of the first event of the block
+     */
+    public long baseOffset(int block) {
+        return fBaseOffsets[block];
+    }
+
+    /**
+     * @param block
+     *            Block index
+     * @return Size of the events of the block, in bytes
+     */
+    public long eventSize(int block) {
+        return fEventSizes[block];
+    }
+
+    /**
+     * @param block
+     *            Block index
+     * @return Rank of the first event of the block
+     */
+    public long firstRank(int block) {
+        return fFirstRanks[block];
+    }
+
+    /**
+     * @param block
+     *            Block index
+     * @return Number of events in the block
+     */
+    public long numEvents(int block) {
+        return fFirstRanks[block + 1] - fFirstRanks[block];
+    }
+}
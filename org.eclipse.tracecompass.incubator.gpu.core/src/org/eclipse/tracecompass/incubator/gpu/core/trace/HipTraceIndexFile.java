@@ -0,0 +1,269 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * @brief Persistent version of the HipTraceIndex, stored as a supplementary
+ *        file of the trace. It holds the result of the header walk of a
+ *        hiptrace_managed file so that re-opening a trace only costs the
+ *        reading of the index. The index is invalidated when the size or the
+ *        modification time of the trace changes.
+ *
+ *        The file is little-endian and laid out as follows :
+ *
+ *        <pre>
+ *        magic (8) | version (4) | numBlocks (4) | traceSize (8) | traceModified (8)
+ *        then, for each block :
+ *        kind (4) | headerLength (4) | headerOffset (8) | baseOffset (8)
+ *        | eventSize (8) | numEvents (8) | firstStamp (8) | header (headerLength)
+ *        </pre>
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceIndexFile {
+
+    /**
+     * @brief Name of the index file, in the supplementary files directory
+     */
+    public static final String INDEX_FILE_NAME = "hiptrace.idx"; //$NON-NLS-1$
+
+    /**
+     * @brief Version of the index format, to be incremented on every change
+     */
+    public static final int VERSION = 1;
+
+    private static final long MAGIC = 0x5844495254504948L; // "HIPTRIDX"
+
+    private static final int FILE_HEADER_SIZE = 32;
+
+    private static final int RECORD_HEADER_SIZE = 48;
+
+    /**
+     * @brief Block holding a counters dump (CountersHeader)
+     */
+    public static final int KIND_COUNTERS = 0;
+
+    /**
+     * @brief Block holding an events dump (EventsHeader)
+     */
+    public static final int KIND_EVENTS = 1;
+
+    /**
+     * @brief Serialized block of the index
+     */
+    public static class Record {
+        /**
+         * @brief Type of header (KIND_COUNTERS or KIND_EVENTS)
+         */
+        public final int kind;
+        /**
+         * @brief Offset of the header line in the trace file
+         */
+        public final long headerOffset;
+        /**
+         * @brief Header line, without the trailing newline
+         */
+        public final String header;
+        /**
+         * @brief Offset of the first event of the block
+         */
+        public final long baseOffset;
+        /**
+         * @brief Size of an event, in bytes
+         */
+        public final long eventSize;
+        /**
+         * @brief Number of events in the block
+         */
+        public final long numEvents;
+        /**
+         * @brief Earliest s_memrealtime stamp of the block, -1 if unknown
+         */
+        public final long firstStamp;
+
+        /**
+         * @param kind
+         *            Type of header
+         * @param headerOffset
+         *            Offset of the header line in the trace file
+         * @param header
+         *            Header line
+         * @param baseOffset
+         *            Offset of the first event
+         * @param eventSize
+         *            Size of an event, in bytes
+         * @param numEvents
+         *            Number of events in the block
+         * @param firstStamp
+         *            Earliest s_memrealtime stamp
+         */
+        public Record(int kind, long headerOffset, String header, long baseOffset, long eventSize, long numEvents, long firstStamp) {
+            this.kind = kind;
+            this.headerOffset = headerOffset;
+            this.header = header;
+            this.baseOffset = baseOffset;
+            this.eventSize = eventSize;
+            this.numEvents = numEvents;
+            this.firstStamp = firstStamp;
+        }
+    }
+
+    /**
+     * @param indexFile
+     *            Index file location
+     * @param trace
+     *            Trace file the index was built from
+     * @return List of records, or null if the index does not exist, is from
+     *         another version or is out of date
+     */
+    public static @Nullable List<Record> read(File indexFile, File trace) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r"); //$NON-NLS-1$
+                FileChannel channel = file.getChannel()) {
+            if (channel.size() < FILE_HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            // Read on the heap : a live mapping would keep the file from
+            // being replaced by write() on some platforms
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            buffer.flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+
+            int numBlocks = buffer.getInt();
+            long traceSize = buffer.getLong();
+            long traceModified = buffer.getLong();
+
+            if (traceSize != trace.length() || traceModified != trace.lastModified()) {
+                return null;
+            }
+
+            // A damaged or foreign file is rebuilt rather than trusted
+            if (numBlocks < 0 || (long) numBlocks * RECORD_HEADER_SIZE > buffer.remaining()) {
+                return null;
+            }
+
+            List<Record> records = new ArrayList<>(numBlocks);
+            for (int i = 0; i < numBlocks; ++i) {
+                if (buffer.remaining() < RECORD_HEADER_SIZE) {
+                    return null;
+                }
+
+                int kind = buffer.getInt();
+                int headerLength = buffer.getInt();
+                long headerOffset = buffer.getLong();
+                long baseOffset = buffer.getLong();
+                long eventSize = buffer.getLong();
+                long numEvents = buffer.getLong();
+                long firstStamp = buffer.getLong();
+
+                if (headerLength < 0 || buffer.remaining() < headerLength) {
+                    return null;
+                }
+
+                byte[] header = new byte[headerLength];
+                buffer.get(header);
+
+                records.add(new Record(kind, headerOffset, new String(header, StandardCharsets.US_ASCII), baseOffset, eventSize, numEvents, firstStamp));
+            }
+
+            return records;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param indexFile
+     *            Index file location
+     * @param trace
+     *            Trace file the index was built from
+     * @param records
+     *            Blocks of the index
+     * @return True if the index was successfully written
+     */
+    public static boolean write(File indexFile, File trace, List<Record> records) {
+        List<byte[]> headers = new ArrayList<>(records.size());
+        long size = FILE_HEADER_SIZE;
+        for (Record record : records) {
+            byte[] header = record.header.getBytes(StandardCharsets.US_ASCII);
+            headers.add(header);
+            size += RECORD_HEADER_SIZE + header.length;
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(records.size());
+        buffer.putLong(trace.length());
+        buffer.putLong(trace.lastModified());
+
+        for (int i = 0; i < records.size(); ++i) {
+            Record record = records.get(i);
+            byte[] header = headers.get(i);
+
+            buffer.putInt(record.kind);
+            buffer.putInt(header.length);
+            buffer.putLong(record.headerOffset);
+            buffer.putLong(record.baseOffset);
+            buffer.putLong(record.eventSize);
+            buffer.putLong(record.numEvents);
+            buffer.putLong(record.firstStamp);
+            buffer.put(header);
+        }
+
+        buffer.flip();
+
+        // Write to a temporary file first, to avoid leaving a truncated index
+        // behind if the analysis is interrupted
+        File tmpFile = new File(indexFile.getPath() + ".tmp"); //$NON-NLS-1$
+        try (RandomAccessFile file = new RandomAccessFile(tmpFile, "rw"); //$NON-NLS-1$
+                FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tmpFile.delete();
+            return false;
+        }
+
+        return true;
+    }
+}
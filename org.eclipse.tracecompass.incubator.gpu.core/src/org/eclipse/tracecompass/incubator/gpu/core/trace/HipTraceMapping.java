@@ -0,0 +1,369 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * @brief Read-only mapping of a whole trace file, split in large aligned
+ *        segments as a single MappedByteBuffer is limited to 2 GB. Each
+ *        segment is mapped on first access and overlaps the next one by
+ *        MAX_RECORD_SIZE bytes, so that a record starting in a segment can
+ *        always be read from it in one piece. Reads are absolute and
+ *        little-endian, which makes the mapping safe to share between
+ *        readers.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipTraceMapping {
+
+    /**
+     * @brief System property to override the size of the mapped segments, in
+     *        bytes. Rounded up to a power of two
+     */
+    public static final String SEGMENT_SIZE_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.mapping.segmentSize"; //$NON-NLS-1$
+
+    /**
+     * @brief Default segment size (1 GB)
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * @brief Largest record (header, event) that is guaranteed to be readable
+     *        from a single segment
+     */
+    public static final int MAX_RECORD_SIZE = 1 << 16;
+
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    // SWAR constants, to look for a byte in 8 bytes at once
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final FileChannel fChannel;
+    private final long fSize;
+    private final int fShift;
+    private final long fSegmentSize;
+    // Segments are published with a volatile write, once their byte order
+    // is set : a reader never sees a partially initialized buffer
+    private final AtomicReferenceArray<MappedByteBuffer> fSegments;
+
+    /**
+     * @param channel
+     *            Channel to the trace file
+     * @param size
+     *            Size of the file to map
+     */
+    public HipTraceMapping(FileChannel channel, long size) {
+        this(channel, size, Long.getLong(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE));
+    }
+
+    /**
+     * @param channel
+     *            Channel to the trace file
+     * @param size
+     *            Size of the file to map
+     * @param segmentSize
+     *            Size of a segment, rounded up to a power of two
+     */
+    public HipTraceMapping(FileChannel channel, long size, long segmentSize) {
+        long clamped = Math.max(1L, Math.min(segmentSize, MAX_SEGMENT_SIZE));
+
+        fChannel = channel;
+        fSize = size;
+        fShift = 64 - Long.numberOfLeadingZeros(clamped - 1);
+        fSegmentSize = 1L << fShift;
+        fSegments = new AtomicReferenceArray<>((int) ((size + fSegmentSize - 1) >>> fShift));
+    }
+
+    /**
+     * @return Size of the mapped file, in bytes
+     */
+    public long size() {
+        return fSize;
+    }
+
+    /**
+     * @return Size of a segment, in bytes
+     */
+    public long segmentSize() {
+        return fSegmentSize;
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Segment holding the position, to be read at index(position).
+     *         At least MAX_RECORD_SIZE bytes (or up to the end of the file) are
+     *         readable from there
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public ByteBuffer buffer(long position) throws IOException {
+        int segment = (int) (position >>> fShift);
+        MappedByteBuffer buffer = fSegments.get(segment);
+        if (buffer == null) {
+            buffer = mapSegment(segment);
+        }
+        return buffer;
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Index of the position in its segment
+     */
+    public int index(long position) {
+        return (int) (position & (fSegmentSize - 1));
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Byte at the given position
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public byte get(long position) throws IOException {
+        return buffer(position).get(index(position));
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Little-endian short at the given position
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public short getShort(long position) throws IOException {
+        return buffer(position).getShort(index(position));
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Little-endian int at the given position
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public int getInt(long position) throws IOException {
+        return buffer(position).getInt(index(position));
+    }
+
+    /**
+     * @param position
+     *            Position in the file
+     * @return Little-endian long at the given position
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public long getLong(long position) throws IOException {
+        return buffer(position).getLong(index(position));
+    }
+
+    /**
+     * @brief Bulk read of little-endian longs, which may span several
+     *        segments
+     *
+     * @param position
+     *            Position of the first long in the file
+     * @param dst
+     *            Destination array
+     * @param offset
+     *            Index of the first long to write in dst
+     * @param length
+     *            Number of longs to read
+     * @throws IOException
+     *             If a segment could not be mapped
+     */
+    public void getLongs(long position, long[] dst, int offset, int length) throws IOException {
+        long pos = position;
+        int done = 0;
+        while (done < length) {
+            ByteBuffer buffer = buffer(pos);
+            int index = index(pos);
+            int count = Math.min(length - done, (buffer.limit() - index) / Long.BYTES);
+            if (count <= 0) {
+                throw new IOException("Read past the end of the mapping"); //$NON-NLS-1$
+            }
+
+            // duplicate() does not keep the byte order
+            ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            view.position(index);
+            view.asLongBuffer().get(dst, offset + done, count);
+
+            done += count;
+            pos += (long) count * Long.BYTES;
+        }
+    }
+
+    /**
+     * @brief Bulk read of little-endian unsigned ints, widened to longs
+     *
+     * @param position
+     *            Position of the first int in the file
+     * @param dst
+     *            Destination array
+     * @param offset
+     *            Index of the first value to write in dst
+     * @param length
+     *            Number of ints to read
+     * @throws IOException
+     *             If a segment could not be mapped
+     */
+    public void getUnsignedInts(long position, long[] dst, int offset, int length) throws IOException {
+        long pos = position;
+        int done = 0;
+        while (done < length) {
+            ByteBuffer buffer = buffer(pos);
+            int index = index(pos);
+            int count = Math.min(length - done, (buffer.limit() - index) / Integer.BYTES);
+            if (count <= 0) {
+                throw new IOException("Read past the end of the mapping"); //$NON-NLS-1$
+            }
+
+            ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            view.position(index);
+            IntBuffer ints = view.asIntBuffer();
+            for (int i = 0; i < count; ++i) {
+                dst[offset + done + i] = Integer.toUnsignedLong(ints.get(i));
+            }
+
+            done += count;
+            pos += (long) count * Integer.BYTES;
+        }
+    }
+
+    /**
+     * @brief Minimum of a column of unsigned longs, e.g. a field of
+     *        fixed-size records. The column is scanned segment per segment
+     *
+     * @param position
+     *            Position of the first value in the file
+     * @param stride
+     *            Distance between two values, in bytes
+     * @param count
+     *            Number of values
+     * @return Smallest unsigned value, -1 (the largest one) if count is 0
+     * @throws IOException
+     *             If a segment could not be mapped, or the column goes past
+     *             the end of the mapping
+     */
+    public long minUnsignedLong(long position, long stride, long count) throws IOException {
+        if (stride < Long.BYTES || stride > MAX_RECORD_SIZE) {
+            throw new IOException("Invalid column stride"); //$NON-NLS-1$
+        }
+
+        // Flipping the sign bit maps the unsigned order to the signed one,
+        // which leaves a branch-free Math.min in the inner loop
+        long min = Long.MAX_VALUE;
+        long pos = position;
+        long remaining = count;
+        while (remaining > 0) {
+            ByteBuffer buffer = buffer(pos);
+            int index = index(pos);
+            int available = buffer.limit() - index - Long.BYTES;
+            if (available < 0) {
+                throw new IOException("Read past the end of the mapping"); //$NON-NLS-1$
+            }
+
+            int n = (int) Math.min(remaining, available / stride + 1);
+            int step = (int) stride;
+            for (int i = 0; i < n; ++i, index += step) {
+                min = Math.min(min, buffer.getLong(index) ^ Long.MIN_VALUE);
+            }
+
+            remaining -= n;
+            pos += n * stride;
+        }
+
+        return min ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * @param position
+     *            Position of the first character of the line in the file
+     * @return Line (without the trailing newline), or null if no newline
+     *         was found in the next MAX_RECORD_SIZE bytes
+     * @throws IOException
+     *             If the segment could not be mapped
+     */
+    public @Nullable String getLine(long position) throws IOException {
+        if (position < 0 || position >= fSize) {
+            return null;
+        }
+
+        ByteBuffer buffer = buffer(position);
+        int index = index(position);
+        int end = indexOfNewline(buffer, index, Math.min(buffer.limit(), index + MAX_RECORD_SIZE));
+        if (end == -1) {
+            return null;
+        }
+
+        byte[] line = new byte[end - index];
+        ByteBuffer view = buffer.duplicate();
+        view.position(index);
+        view.get(line);
+
+        return new String(line, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @brief Looks for a newline, 8 bytes at a time
+     *
+     * @param buffer
+     *            Little-endian buffer
+     * @param from
+     *            First index to search (inclusive)
+     * @param to
+     *            Last index to search (exclusive)
+     * @return Index of the first newline in [from, to), -1 if none
+     */
+    public static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        int i = from;
+
+        // A byte of word is zero where there is a newline. The lowest flagged
+        // byte is always exact, which is the first one in little-endian order
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i) ^ NEWLINES;
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+
+        for (; i < to; ++i) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int segment) throws IOException {
+        MappedByteBuffer buffer = fSegments.get(segment);
+        if (buffer != null) {
+            return buffer;
+        }
+
+        long position = segment * fSegmentSize;
+        long length = Math.min(fSegmentSize + MAX_RECORD_SIZE, fSize - position);
+
+        buffer = fChannel.map(MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        fSegments.set(segment, buffer);
+
+        return buffer;
+    }
+}
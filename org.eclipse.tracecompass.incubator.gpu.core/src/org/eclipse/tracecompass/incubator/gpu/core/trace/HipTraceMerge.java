@@ -0,0 +1,139 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.io.IOException;
+
+/**
+ * @brief K-way merge of the producers of an events block. The events of a
+ *        block are laid out producer by producer, each producer (thread or
+ *        wave) writing its events in chronological order. The merge yields
+ *        the events of the block in timestamp order, with a binary min-heap
+ *        of producers keyed on the stamp of their next event. The heap is
+ *        held in primitive arrays, nothing is allocated per event.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public final class HipTraceMerge {
+
+    private final long[] fKeys;
+    private final int[] fProducers;
+    private int fSize = 0;
+
+    private HipTraceMerge(int capacity) {
+        fKeys = new long[capacity];
+        fProducers = new int[capacity];
+    }
+
+    /**
+     * @param offsets
+     *            Offsets table of the block : first event of each producer,
+     *            followed by the number of events
+     * @param mapping
+     *            Mapping of the trace file
+     * @param stampPosition
+     *            Position of the stamp of the first event of the block, in
+     *            the file
+     * @param eventSize
+     *            Size of an event, in bytes
+     * @return Index (in the block) of the events, in timestamp order. Equal
+     *         stamps are ordered by producer
+     * @throws IOException
+     *             If a stamp could not be read
+     */
+    public static int[] timeOrder(long[] offsets, HipTraceMapping mapping, long stampPosition, long eventSize) throws IOException {
+        int numProducers = offsets.length - 1;
+        int numEvents = (int) offsets[numProducers];
+
+        int[] order = new int[numEvents];
+        int[] cursors = new int[numProducers];
+        HipTraceMerge heap = new HipTraceMerge(numProducers);
+
+        for (int producer = 0; producer < numProducers; ++producer) {
+            cursors[producer] = (int) offsets[producer];
+            if (offsets[producer] < offsets[producer + 1]) {
+                heap.push(stampKey(mapping, stampPosition, eventSize, cursors[producer]), producer);
+            }
+        }
+
+        for (int i = 0; i < numEvents; ++i) {
+            int producer = heap.fProducers[0];
+            int event = cursors[producer]++;
+            order[i] = event;
+
+            if (cursors[producer] < offsets[producer + 1]) {
+                // Same producer, later event : the top is replaced in place
+                heap.replaceTop(stampKey(mapping, stampPosition, eventSize, cursors[producer]));
+            } else {
+                heap.pop();
+            }
+        }
+
+        return order;
+    }
+
+    /**
+     * @brief Stamps are unsigned : flipping the sign bit maps them to signed
+     *        keys in the same order
+     */
+    private static long stampKey(HipTraceMapping mapping, long stampPosition, long eventSize, int event) throws IOException {
+        return mapping.getLong(stampPosition + event * eventSize) ^ Long.MIN_VALUE;
+    }
+
+    private boolean less(int a, int b) {
+        return fKeys[a] < fKeys[b] || (fKeys[a] == fKeys[b] && fProducers[a] < fProducers[b]);
+    }
+
+    private void swap(int a, int b) {
+        long key = fKeys[a];
+        fKeys[a] = fKeys[b];
+        fKeys[b] = key;
+
+        int producer = fProducers[a];
+        fProducers[a] = fProducers[b];
+        fProducers[b] = producer;
+    }
+
+    private void push(long key, int producer) {
+        int i = fSize++;
+        fKeys[i] = key;
+        fProducers[i] = producer;
+
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void replaceTop(long key) {
+        fKeys[0] = key;
+        siftDown();
+    }
+
+    private void pop() {
+        --fSize;
+        fKeys[0] = fKeys[fSize];
+        fProducers[0] = fProducers[fSize];
+        siftDown();
+    }
+
+    private void siftDown() {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= fSize) {
+                return;
+            }
+
+            int child = (left + 1 < fSize && less(left + 1, left)) ? left + 1 : left;
+            if (!less(child, i)) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+}
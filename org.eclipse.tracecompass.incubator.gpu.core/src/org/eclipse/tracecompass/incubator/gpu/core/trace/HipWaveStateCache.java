@@ -0,0 +1,130 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * @brief Least recently used cache of the HipWaveStateColumns of a trace,
+ *        bounded by a memory budget. The columns of a launch are built on
+ *        first use and evicted when the budget is exceeded.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipWaveStateCache {
+
+    /**
+     * @brief System property for the memory budget of the cache, in bytes
+     */
+    public static final String BUDGET_PROPERTY = "org.eclipse.tracecompass.incubator.gpu.core.waveStateCache.budget"; //$NON-NLS-1$
+
+    /**
+     * @brief Default memory budget (256 MB)
+     */
+    public static final long DEFAULT_BUDGET = 256L << 20;
+
+    private final long fBudget;
+    private final LinkedHashMap<HipTrace.EventsHeader, HipWaveStateColumns> fColumns = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<HipTrace.EventsHeader, CompletableFuture<@Nullable HipWaveStateColumns>> fBuilding = new HashMap<>();
+    private long fUsed = 0L;
+
+    /**
+     * @brief Cache with the budget of the system property
+     */
+    public HipWaveStateCache() {
+        this(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+    }
+
+    /**
+     * @param budget
+     *            Memory budget, in bytes
+     */
+    public HipWaveStateCache(long budget) {
+        fBudget = budget;
+    }
+
+    /**
+     * @param header
+     *            Header of a hip::WaveState block
+     * @param mapping
+     *            Mapping of the trace file
+     * @return Columns of the block, or null if they could not be built. A
+     *         launch larger than the whole budget is built but not kept
+     */
+    public @Nullable HipWaveStateColumns get(HipTrace.EventsHeader header, HipTraceMapping mapping) {
+        // The lock is only held to look up and update the cache : a launch
+        // is built outside of it, other launches are served meanwhile. The
+        // readers of a launch being built wait for the same build
+        CompletableFuture<@Nullable HipWaveStateColumns> pending;
+        boolean builder = false;
+        synchronized (this) {
+            HipWaveStateColumns columns = fColumns.get(header);
+            if (columns != null) {
+                return columns;
+            }
+
+            pending = fBuilding.get(header);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                fBuilding.put(header, pending);
+                builder = true;
+            }
+        }
+
+        if (!builder) {
+            return pending.join();
+        }
+
+        HipWaveStateColumns columns = null;
+        try {
+            columns = HipWaveStateColumns.build(header, mapping);
+        } finally {
+            synchronized (this) {
+                fBuilding.remove(header);
+                if (columns != null) {
+                    insert(header, columns);
+                }
+            }
+            pending.complete(columns);
+        }
+
+        return columns;
+    }
+
+    private void insert(HipTrace.EventsHeader header, HipWaveStateColumns columns) {
+        if (columns.memorySize() > fBudget) {
+            return;
+        }
+
+        fColumns.put(header, columns);
+        fUsed += columns.memorySize();
+
+        // Access order : the eldest entries are the least recently used
+        Iterator<Map.Entry<HipTrace.EventsHeader, HipWaveStateColumns>> it = fColumns.entrySet().iterator();
+        while (fUsed > fBudget && it.hasNext()) {
+            Map.Entry<HipTrace.EventsHeader, HipWaveStateColumns> entry = it.next();
+            fUsed -= entry.getValue().memorySize();
+            it.remove();
+        }
+    }
+
+    /**
+     * @return Memory used by the cached columns, in bytes
+     */
+    public synchronized long usedMemory() {
+        return fUsed;
+    }
+
+    /**
+     * @brief Drops every cached launch
+     */
+    public synchronized void clear() {
+        fColumns.clear();
+        fUsed = 0L;
+    }
+}
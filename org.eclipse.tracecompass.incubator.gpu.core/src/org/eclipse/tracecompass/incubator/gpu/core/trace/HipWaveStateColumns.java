@@ -0,0 +1,271 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * @brief Decoded hip::WaveState records of a kernel launch, stored as
+ *        primitive columns (one array per field) in timestamp order. The
+ *        analyses loop over the columns instead of creating events.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipWaveStateColumns {
+
+    private static final int NUM_COLUMNS = 5;
+
+    private final HipTrace.EventsHeader fHeader;
+    private final long[] fStamps;
+    private final long[] fBasicBlocks;
+    private final long[] fExecs;
+    private final long[] fHwIds;
+    private final long[] fProducers;
+
+    // Timestamp conversion, resolved once
+    private final long fBaseNanos;
+    private final long fFirstStamp;
+    private final boolean fHasStamp;
+
+    private HipWaveStateColumns(HipTrace.EventsHeader header, int size) {
+        fHeader = header;
+        fStamps = new long[size];
+        fBasicBlocks = new long[size];
+        fExecs = new long[size];
+        fHwIds = new long[size];
+        fProducers = new long[size];
+
+        fBaseNanos = header.counters.roctracerEnd;
+        fFirstStamp = header.getFirstStamp();
+        fHasStamp = header.hasStamp();
+    }
+
+    /**
+     * @param header
+     *            Header of a hip::WaveState block
+     * @param mapping
+     *            Mapping of the trace file
+     * @return Columns of the block, or null if it could not be read
+     */
+    public static @Nullable HipWaveStateColumns build(HipTrace.EventsHeader header, HipTraceMapping mapping) {
+        long[] offsets = header.getOffsets();
+        long numEvents = header.numEvents();
+        if (header.kind != HipAnalyzerEvent.EventKind.WAVE_STATE || offsets == null || numEvents > Integer.MAX_VALUE - 8 || header.eventSize > HipTraceMapping.MAX_RECORD_SIZE) {
+            return null;
+        }
+
+        int size = (int) numEvents;
+        HipWaveStateColumns columns = new HipWaveStateColumns(header, size);
+
+        // The records are gathered in time order from the file, where they
+        // are laid out producer by producer
+        int[] order = header.getTimeOrder();
+        long base = header.headerPos + header.offsetsSize();
+        int producer = 0;
+        try {
+            for (int i = 0; i < size; ++i) {
+                int event = i;
+                if (order != null) {
+                    event = order[i];
+                    producer = producerOf(offsets, event);
+                } else {
+                    while (offsets[producer + 1] <= event) {
+                        ++producer;
+                    }
+                }
+
+                long position = base + event * header.eventSize;
+                ByteBuffer buffer = mapping.buffer(position);
+                int index = mapping.index(position);
+                if (index + header.eventSize > buffer.limit()) {
+                    return null;
+                }
+
+                columns.fStamps[i] = header.readField(buffer, index, 0);
+                columns.fExecs[i] = header.readField(buffer, index, 1);
+                columns.fHwIds[i] = header.readField(buffer, index, 2);
+                columns.fBasicBlocks[i] = header.readField(buffer, index, 3);
+                columns.fProducers[i] = producer;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (order == null) {
+            // Not merged (e.g. unusual stamp size) : sorted here instead
+            columns.sortByStamp();
+        }
+
+        return columns;
+    }
+
+    /**
+     * @return Producer of the event, whose events start at or before it
+     */
+    private static int producerOf(long[] offsets, int event) {
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= event) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @brief Stable sort of the records on their unsigned stamp : each
+     *        producer keeps its own order, equal stamps are ordered by
+     *        producer as in HipTraceMerge
+     */
+    private void sortByStamp() {
+        int size = size();
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; ++i) {
+            sorted = Long.compareUnsigned(fStamps[i - 1], fStamps[i]) <= 0;
+        }
+        if (sorted) {
+            return;
+        }
+
+        // Bottom-up merge sort of the record indices
+        int[] order = new int[size];
+        int[] merged = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        for (int width = 1; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int mid = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                int left = low;
+                int right = mid;
+                for (int k = low; k < high; ++k) {
+                    if (left < mid && (right >= high || Long.compareUnsigned(fStamps[order[left]], fStamps[order[right]]) <= 0)) {
+                        merged[k] = order[left++];
+                    } else {
+                        merged[k] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+
+        long[] column = new long[size];
+        for (long[] values : new long[][] { fStamps, fBasicBlocks, fExecs, fHwIds, fProducers }) {
+            for (int i = 0; i < size; ++i) {
+                column[i] = values[order[i]];
+            }
+            System.arraycopy(column, 0, values, 0, size);
+        }
+    }
+
+    /**
+     * @return Events header of the kernel launch
+     */
+    public HipTrace.EventsHeader header() {
+        return fHeader;
+    }
+
+    /**
+     * @return Number of records
+     */
+    public int size() {
+        return fStamps.length;
+    }
+
+    /**
+     * @return Approximate memory footprint, in bytes
+     */
+    public long memorySize() {
+        return (long) NUM_COLUMNS * Long.BYTES * fStamps.length;
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Raw s_memrealtime register
+     */
+    public long stamp(int i) {
+        return fStamps[i];
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Absolute time of the record, in nanoseconds
+     */
+    public long time(int i) {
+        return fHasStamp ? fBaseNanos + GcnAsmParser.ticksToNanos(fStamps[i] - fFirstStamp) : fBaseNanos;
+    }
+
+    /**
+     * @param time
+     *            Absolute time, in nanoseconds
+     * @return Index of the first record at or after the given time, size()
+     *         if there is none
+     */
+    public int firstAtOrAfter(long time) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (time(mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Basic block id, -1 when the wave is finished
+     */
+    public long basicBlock(int i) {
+        return fBasicBlocks[i];
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Execution mask
+     */
+    public long exec(int i) {
+        return fExecs[i];
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Raw hardware id register
+     */
+    public long hwId(int i) {
+        return fHwIds[i];
+    }
+
+    /**
+     * @param i
+     *            Record index, in time order
+     * @return Global id of the wave in the launch
+     */
+    public long producer(int i) {
+        return fProducers[i];
+    }
+
+    /**
+     * @return Number of producers (waves) of the launch
+     */
+    public int numProducers() {
+        return (int) fHeader.parallelism();
+    }
+}
@@ -0,0 +1,161 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * @brief hip::WaveState event, holding the raw values of the record. The
+ *        state providers read them through the primitive accessors, and the
+ *        generic field tree is only built when the content is requested (e.g.
+ *        by the events table)
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public class HipWaveStateEvent extends TmfEvent {
+
+    @SuppressWarnings("nls")
+    private static final TmfEventType TYPE = new TmfEventType(HipAnalyzerEvent.HipWaveState.name(),
+            new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, new TmfEventField[] {
+                    new TmfEventField("type", null, null),
+                    new TmfEventField("producer_id", null, null),
+                    new TmfEventField("bb", null, null),
+                    new TmfEventField("exec", null, null),
+                    new TmfEventField("stamp", null, null),
+                    new TmfEventField("hw_id", null, null),
+                    new TmfEventField("header", null, null)
+            }));
+
+    private final HipTrace.EventsHeader fHeader;
+    private final long fEventOffset;
+    private final long fStamp;
+    private final long fExec;
+    private final long fHwId;
+    private final long fBasicBlock;
+
+    private volatile @Nullable ITmfEventField fContent = null;
+
+    /**
+     * @param trace
+     *            Trace from which the event is coming
+     * @param rank
+     *            Event rank in the trace
+     * @param timestamp
+     *            Event timestamp
+     * @param header
+     *            Events header
+     * @param eventOffset
+     *            Offset of the event in the events dump
+     * @param stamp
+     *            s_memrealtime register
+     * @param exec
+     *            Execution mask
+     * @param hwId
+     *            Hardware id register
+     * @param basicBlock
+     *            Basic block id
+     */
+    public HipWaveStateEvent(ITmfTrace trace, long rank, ITmfTimestamp timestamp, HipTrace.EventsHeader header, long eventOffset, long stamp, long exec, long hwId, long basicBlock) {
+        super(trace, rank, timestamp, TYPE, null);
+        fHeader = header;
+        fEventOffset = eventOffset;
+        fStamp = stamp;
+        fExec = exec;
+        fHwId = hwId;
+        fBasicBlock = basicBlock;
+    }
+
+    /**
+     * @return Events header of the kernel launch
+     */
+    public HipTrace.EventsHeader getHeader() {
+        return fHeader;
+    }
+
+    /**
+     * @return Basic block id
+     */
+    public long getBasicBlock() {
+        return fBasicBlock;
+    }
+
+    /**
+     * @return Execution mask, one bit per active thread
+     */
+    public long getExec() {
+        return fExec;
+    }
+
+    /**
+     * @return Raw hardware id register
+     */
+    public long getHwId() {
+        return fHwId;
+    }
+
+    /**
+     * @return Raw s_memrealtime register
+     */
+    public long getStamp() {
+        return fStamp;
+    }
+
+    /**
+     * @return Global id of the wave in the kernel launch
+     */
+    public long getProducerId() {
+        return fHeader.idOf(fEventOffset);
+    }
+
+    @Override
+    public ITmfEventField getContent() {
+        ITmfEventField content = fContent;
+        if (content == null) {
+            // Racing readers build equal trees, either can be kept
+            content = buildContent();
+            fContent = content;
+        }
+        return content;
+    }
+
+    private ITmfEventField buildContent() {
+        @SuppressWarnings("nls")
+        final TmfEventField[] eventsFields = {
+                new TmfEventField("type", HipAnalyzerEvent.HipWaveState.name(), null),
+                new TmfEventField("producer_id", null, fHeader.geometryOf(fEventOffset)),
+                new TmfEventField("bb", fBasicBlock, null),
+                new TmfEventField("exec", new GcnAsmParser.ExecRegister(fExec), null),
+                new TmfEventField("stamp", fStamp, null),
+                new TmfEventField("hw_id", fHwId, new GcnAsmParser.HardwareIdRegister(fHwId).toEventFields()),
+                new TmfEventField("header", fHeader, null)
+        };
+
+        return new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, eventsFields);
+    }
+
+    /**
+     * @brief The content is built on demand : the record is compared through
+     *        its raw values instead
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (!(obj instanceof HipWaveStateEvent) || !super.equals(obj)) {
+            return false;
+        }
+
+        HipWaveStateEvent other = (HipWaveStateEvent) obj;
+        return fHeader == other.fHeader && fEventOffset == other.fEventOffset && fStamp == other.fStamp && fExec == other.fExec && fHwId == other.fHwId && fBasicBlock == other.fBasicBlock;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), System.identityHashCode(fHeader), fEventOffset, fStamp, fExec, fHwId, fBasicBlock);
+    }
+}
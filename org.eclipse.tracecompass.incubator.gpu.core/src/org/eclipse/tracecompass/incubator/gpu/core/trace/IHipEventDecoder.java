@@ -0,0 +1,45 @@
+package org.eclipse.tracecompass.incubator.gpu.core.trace;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * @brief Decoder for a type of hip-analyzer events, contributed through the
+ *        org.eclipse.tracecompass.incubator.gpu.core.eventdecoder extension
+ *        point (or HipEventDecoderRegistry.register). The decoder is resolved
+ *        once per events block, and then called for every event of the
+ *        block : it is shared between traces and must be stateless.
+ *
+ * @author Sébastien Darche <sebastien.darche@polymtl.ca>
+ *
+ */
+public interface IHipEventDecoder {
+
+    /**
+     * @param header
+     *            Events header, with the event name and the fields layout
+     * @return True if the decoder can decode the events of this block
+     */
+    boolean accepts(HipTrace.EventsHeader header);
+
+    /**
+     * @param trace
+     *            Trace from which the event is coming
+     * @param rank
+     *            Event rank in the trace
+     * @param eventOffset
+     *            Offset of the event in the events dump, in bytes
+     * @param header
+     *            Events header
+     * @param buffer
+     *            Little-endian mapped buffer holding the event
+     * @param index
+     *            Absolute index of the event in the buffer. The fields can be
+     *            read with header.readField(buffer, index, field)
+     * @return Decoded event, or null if it could not be decoded
+     */
+    @Nullable ITmfEvent decode(ITmfTrace trace, long rank, long eventOffset, HipTrace.EventsHeader header, ByteBuffer buffer, int index);
+}
@@ -1,5 +1,7 @@
 package org.eclipse.tracecompass.incubator.gpu.core.trace;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -8,74 +10,200 @@ import java.util.List;
  */
 public class ItaniumABIParser {
 
+    /**
+     * @brief Decoding strategy of a type, resolved once per field so that
+     *        events can be decoded without comparing type names
+     */
+    public enum Kind {
+        /** bool */
+        BOOL,
+        /** char */
+        CHAR,
+        /** Signed integral type, sign-extended */
+        SIGNED,
+        /** Unsigned integral type, zero-extended */
+        UNSIGNED,
+        /** float or double */
+        FLOATING,
+        /** void, or unsupported type. Kept as raw bytes */
+        OTHER
+    }
+
     /**
      * @param mangledType
      *            Mangled name of type according to the Itanium ABI
      *            Specification
      * @param sizeof
      *            Size (in bytes) of the type
-     * @param bytes
-     *            Serialized data
-     *
-     * @return A deserialized version of the given bytes, or an unchanged list
-     *         of bytes if the type is not recognized. Numeric types are
-     *         returned as Long
+     * @return Decoding strategy of the type
      */
     @SuppressWarnings("nls")
-    public static Object deserializeVariable(String mangledType, long sizeof, List<Byte> bytes) {
+    public static Kind kindOf(String mangledType, long sizeof) {
         switch (mangledType) {
-        case "v":
-            // Void
-            return bytes;
         case "b":
-            // bool
-            return (bytes.get(0) != 0);
+            return Kind.BOOL;
         case "c":
-            // char
-            byte b = bytes.get(0);
-            return (char) b;
-        // Numeric values
-        case "h":
-            // unsigned char, in most cases == uint8_t so numeric value
+            return Kind.CHAR;
+        case "a":
         case "s":
-            // short
-        case "t":
-            // unsigned short
         case "i":
-            // int
-        case "j":
-            // unsigned int
         case "l":
-            // unsigned long
-        case "m":
-            // unsigned long
         case "x":
-            // long long
+            return (sizeof <= Long.BYTES) ? Kind.SIGNED : Kind.OTHER;
+        case "h":
+        case "t":
+        case "j":
+        case "m":
         case "y":
-            // unsigned long long
-            return accumulate(sizeof, bytes);
+            return (sizeof <= Long.BYTES) ? Kind.UNSIGNED : Kind.OTHER;
         case "f":
-            // float
-            int accumulated_float = (int) accumulate(sizeof, bytes);
-            return Float.intBitsToFloat(accumulated_float);
         case "d":
-            // double
-            long accumulated_double = accumulate(sizeof, bytes);
-            return Double.longBitsToDouble(accumulated_double);
+            return (sizeof == Float.BYTES || sizeof == Double.BYTES) ? Kind.FLOATING : Kind.OTHER;
+        case "v":
         default:
-            return bytes;
+            return Kind.OTHER;
         }
     }
 
-    private static long accumulate(long sizeof, List<Byte> bytes) {
-        long val = 0l;
+    /**
+     * @param mangledType
+     *            Mangled name of type according to the Itanium ABI
+     *            Specification
+     * @param sizeof
+     *            Size (in bytes) of the type
+     * @param buffer
+     *            Little-endian buffer holding the serialized data
+     * @param index
+     *            Absolute index of the variable in the buffer
+     *
+     * @return A deserialized version of the variable, or the list of its
+     *         bytes if the type is not recognized. Numeric types are returned
+     *         as Long
+     */
+    public static Object deserializeVariable(String mangledType, long sizeof, ByteBuffer buffer, int index) {
+        return deserializeVariable(kindOf(mangledType, sizeof), sizeof, buffer, index);
+    }
 
-        for (int i = 0; i < sizeof; ++i) {
-            long unsignedValue = bytes.get(i) & 0xff;
-            val += unsignedValue << (8 * i);
+    /**
+     * @param kind
+     *            Decoding strategy of the type
+     * @param sizeof
+     *            Size (in bytes) of the type
+     * @param buffer
+     *            Little-endian buffer holding the serialized data
+     * @param index
+     *            Absolute index of the variable in the buffer
+     *
+     * @return A deserialized version of the variable, or the list of its
+     *         bytes if the type is not recognized. Numeric types are returned
+     *         as Long
+     */
+    public static Object deserializeVariable(Kind kind, long sizeof, ByteBuffer buffer, int index) {
+        switch (kind) {
+        case BOOL:
+            return (buffer.get(index) != 0);
+        case CHAR:
+            return (char) buffer.get(index);
+        case SIGNED:
+            return readValue(true, sizeof, buffer, index);
+        case UNSIGNED:
+            return readValue(false, sizeof, buffer, index);
+        case FLOATING:
+            if (sizeof == Float.BYTES) {
+                return buffer.getFloat(index);
+            }
+            return buffer.getDouble(index);
+        case OTHER:
+        default:
+            return bytesOf(sizeof, buffer, index);
+        }
+    }
+
+    /**
+     * @brief Reads an integral variable without allocating. Signed types are
+     *        sign-extended, other types (including floating point types, read
+     *        as their raw bits) are zero-extended to a long
+     *
+     * @param mangledType
+     *            Mangled name of type according to the Itanium ABI
+     *            Specification
+     * @param sizeof
+     *            Size (in bytes) of the type, at most 8
+     * @param buffer
+     *            Little-endian buffer holding the serialized data
+     * @param index
+     *            Absolute index of the variable in the buffer
+     * @return Value of the variable
+     */
+    public static long readValue(String mangledType, long sizeof, ByteBuffer buffer, int index) {
+        return readValue(kindOf(mangledType, sizeof) == Kind.SIGNED, sizeof, buffer, index);
+    }
+
+    /**
+     * @param signed
+     *            Whether the value has to be sign-extended
+     * @param sizeof
+     *            Size (in bytes) of the variable, at most 8
+     * @param buffer
+     *            Little-endian buffer holding the serialized data
+     * @param index
+     *            Absolute index of the variable in the buffer
+     * @return Value of the variable
+     */
+    public static long readValue(boolean signed, long sizeof, ByteBuffer buffer, int index) {
+        switch ((int) sizeof) {
+        case Long.BYTES:
+            return buffer.getLong(index);
+        case Integer.BYTES: {
+            int value = buffer.getInt(index);
+            return signed ? value : Integer.toUnsignedLong(value);
+        }
+        case Short.BYTES: {
+            short value = buffer.getShort(index);
+            return signed ? value : Short.toUnsignedLong(value);
+        }
+        case Byte.BYTES: {
+            byte value = buffer.get(index);
+            return signed ? value : Byte.toUnsignedLong(value);
+        }
+        default: {
+            // Unusual size, assemble the value byte per byte
+            int size = (int) Math.min(sizeof, Long.BYTES);
+            long value = 0L;
+            for (int i = 0; i < size; ++i) {
+                value |= (buffer.get(index + i) & 0xFFL) << (8 * i);
+            }
+            if (signed && size > 0 && size < Long.BYTES) {
+                int shift = 64 - 8 * size;
+                value = (value << shift) >> shift;
+            }
+            return value;
         }
+        }
+    }
 
-        return val;
+    /**
+     * @param sizeof
+     *            Size (in bytes) of the floating point type, 4 or 8
+     * @param buffer
+     *            Little-endian buffer holding the serialized data
+     * @param index
+     *            Absolute index of the variable in the buffer
+     * @return Value of the variable
+     */
+    public static double readDouble(long sizeof, ByteBuffer buffer, int index) {
+        if (sizeof == Float.BYTES) {
+            return buffer.getFloat(index);
+        }
+        return buffer.getDouble(index);
+    }
+
+    private static List<Byte> bytesOf(long sizeof, ByteBuffer buffer, int index) {
+        List<Byte> bytes = new ArrayList<>((int) sizeof);
+        for (int i = 0; i < sizeof; ++i) {
+            bytes.add(buffer.get(index + i));
+        }
+        return bytes;
     }
 
     /**
@@ -92,6 +220,8 @@ public class ItaniumABIParser {
             return "bool";
         case "c":
             return "char";
+        case "a":
+            return "signed char";
         case "h":
             return "unsigned char";
         case "s":
@@ -103,7 +233,7 @@ public class ItaniumABIParser {
         case "j":
             return "unsigned int";
         case "l":
-            return "unsigned long";
+            return "long";
         case "m":
             return "unsigned long";
         case "x":
@@ -3,14 +3,26 @@
  */
 package org.eclipse.tracecompass.incubator.gpu.ui.views;
 
+import java.util.Comparator;
+import java.util.Objects;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swtchart.Range;
 import org.eclipse.tracecompass.incubator.gpu.analysis.GpuOccupancyDataProvider;
+import org.eclipse.tracecompass.tmf.ui.viewers.TmfViewer;
+import org.eclipse.tracecompass.tmf.ui.viewers.tree.AbstractSelectTreeViewer2;
+import org.eclipse.tracecompass.tmf.ui.viewers.tree.ITmfTreeColumnDataProvider;
+import org.eclipse.tracecompass.tmf.ui.viewers.tree.TmfTreeColumnData;
+import org.eclipse.tracecompass.tmf.ui.viewers.tree.TmfTreeViewerEntry;
 import org.eclipse.tracecompass.tmf.ui.viewers.xychart.TmfXYChartViewer;
 import org.eclipse.tracecompass.tmf.ui.viewers.xychart.linechart.TmfFilteredXYChartViewer;
 import org.eclipse.tracecompass.tmf.ui.viewers.xychart.linechart.TmfXYChartSettings;
 import org.eclipse.tracecompass.tmf.ui.views.xychart.TmfChartView;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * @author Sébastien Darche <sebastien.darche@polymtl.ca>
  *
@@ -45,4 +57,31 @@ public class GpuOccupancyView extends TmfChartView {
         return chart;
     }
 
+    /**
+     * @brief Tree of the GPU, shader engines, shader arrays, compute units and
+     *        SIMDs, whose occupancy is shown when checked
+     */
+    public static final class TreeXYViewer extends AbstractSelectTreeViewer2 {
+
+        /**
+         * @param parent
+         *            Parent composite
+         */
+        public TreeXYViewer(Composite parent) {
+            super(parent, 1, GpuOccupancyDataProvider.ID);
+        }
+
+        @SuppressWarnings("nls")
+        @Override
+        protected ITmfTreeColumnDataProvider getColumnDataProvider() {
+            return () -> ImmutableList.of(createColumn("Unit", Comparator.comparing(TmfTreeViewerEntry::getName)),
+                    new TmfTreeColumnData("Legend"));
+        }
+    }
+
+    @Override
+    protected @NonNull TmfViewer createLeftChildViewer(@Nullable Composite parent) {
+        return new TreeXYViewer(Objects.requireNonNull(parent));
+    }
+
 }